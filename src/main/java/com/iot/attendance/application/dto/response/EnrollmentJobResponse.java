@@ -0,0 +1,30 @@
+package com.iot.attendance.application.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.iot.attendance.domain.enums.EnrollmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EnrollmentJobResponse {
+
+    private String jobId;
+    private EnrollmentStatus status;
+    private String documentNumber;
+    private Integer fingerprintId;
+    private WorkerResponse worker;
+    private String error;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime updatedAt;
+}
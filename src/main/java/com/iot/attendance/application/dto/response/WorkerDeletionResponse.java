@@ -0,0 +1,22 @@
+package com.iot.attendance.application.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class WorkerDeletionResponse {
+
+    private Long workerId;
+    private Integer fingerprintId;
+    // Fila de firebase_outbox con el borrado de la huella
+    private Long outboxId;
+    // QUEUED, RETRYING, ACKNOWLEDGED, FAILED, UNCERTAIN o NO_FINGERPRINT
+    private String deviceStatus;
+    private String deviceState;
+    private String error;
+}
@@ -2,6 +2,7 @@ package com.iot.attendance.application.service;
 
 import com.iot.attendance.application.dto.request.RfidAttendanceRequest;
 import com.iot.attendance.application.dto.response.AttendanceResponse;
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -12,6 +13,11 @@ public interface AttendanceService {
 
     AttendanceResponse recordCheckOut(RfidAttendanceRequest request);
 
+    // Variantes con la tarjeta ya resuelta por RfidCardCache: no la vuelven a consultar
+    AttendanceResponse recordCheckIn(RfidAttendanceRequest request, RfidCardSnapshot card);
+
+    AttendanceResponse recordCheckOut(RfidAttendanceRequest request, RfidCardSnapshot card);
+
     AttendanceResponse getAttendanceById(Long id);
 
     List<AttendanceResponse> getAttendanceByDate(LocalDate date);
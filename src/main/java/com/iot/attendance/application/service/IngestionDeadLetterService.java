@@ -0,0 +1,23 @@
+package com.iot.attendance.application.service;
+
+import com.iot.attendance.application.dto.response.DeadLetterResponse;
+import com.iot.attendance.infrastructure.firebase.IngestionEvent;
+
+import java.util.List;
+
+public interface IngestionDeadLetterService {
+
+    void record(IngestionEvent event, Exception error);
+
+    int retryDue();
+
+    List<DeadLetterResponse> getDeadLetters(String status);
+
+    boolean replay(Long id);
+
+    int replayAll();
+
+    void delete(Long id);
+
+    long purge(String status);
+}
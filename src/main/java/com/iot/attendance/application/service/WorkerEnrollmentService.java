@@ -0,0 +1,15 @@
+package com.iot.attendance.application.service;
+
+import com.iot.attendance.application.dto.request.CreateWorkerRequest;
+import com.iot.attendance.application.dto.response.EnrollmentJobResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface WorkerEnrollmentService {
+
+    EnrollmentJobResponse startEnrollment(CreateWorkerRequest request);
+
+    EnrollmentJobResponse getJob(String jobId);
+
+    CompletableFuture<EnrollmentJobResponse> awaitCompletion(String jobId);
+}
@@ -3,6 +3,7 @@ package com.iot.attendance.application.service;
 import com.iot.attendance.application.dto.request.AssignFingerprintRequest;
 import com.iot.attendance.application.dto.request.CreateWorkerRequest;
 import com.iot.attendance.application.dto.request.UpdateWorkerRequest;
+import com.iot.attendance.application.dto.response.WorkerDeletionResponse;
 import com.iot.attendance.application.dto.response.WorkerResponse;
 import com.iot.attendance.domain.enums.WorkerStatus;
 
@@ -10,7 +11,8 @@ import java.util.List;
 
 public interface WorkerService {
 
-    WorkerResponse createWorker(CreateWorkerRequest request);
+    // Persiste un trabajador cuya huella ya fue registrada en el sensor (ver WorkerEnrollmentService)
+    WorkerResponse createEnrolledWorker(CreateWorkerRequest request, Integer fingerprintId);
 
     WorkerResponse updateWorker(Long id, UpdateWorkerRequest request);
 
@@ -42,7 +44,14 @@ public interface WorkerService {
 
     WorkerResponse deactivateWorker(Long workerId);
 
+    // El borrado de la huella en el sensor queda en el outbox, dentro de la misma transacción
     void deleteWorker(Long workerId);
 
+    // Borrado en lote en una sola transacción; cada resultado lleva el id de outbox de su borrado de huella
+    List<WorkerDeletionResponse> deleteWorkers(List<Long> workerIds);
+
+    // Avance de los borrados de huella encolados por deleteWorker/deleteWorkers, leído del outbox
+    List<WorkerDeletionResponse> getFingerprintDeletionStatus(List<Long> outboxIds);
+
     List<WorkerResponse> bulkCreateWorkers(List<CreateWorkerRequest> requests);
 }
@@ -0,0 +1,79 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.domain.enums.AttendanceStatus;
+import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
+import com.iot.attendance.infrastructure.persistence.entity.SystemConfigurationEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// Reglas de marcaje compartidas por el flujo unitario (AttendanceServiceImpl) y el de lotes (IngestionBatchProcessor)
+@Component
+public class AttendanceRules {
+
+    public LocalTime getCheckInWindowStart(SystemConfigurationEntity config) {
+        return config.getWorkStartTime().minusMinutes(60);
+    }
+
+    public boolean isWithinCheckInWindow(LocalTime time, SystemConfigurationEntity config) {
+        LocalTime windowStart = getCheckInWindowStart(config);
+        LocalTime windowEnd = config.getWorkEndTime();
+
+        boolean isWindowCrossingMidnight = windowStart.isAfter(windowEnd);
+        if (isWindowCrossingMidnight) {
+            return !time.isBefore(windowStart) || !time.isAfter(windowEnd);
+        }
+        return !time.isBefore(windowStart) && !time.isAfter(windowEnd);
+    }
+
+    public LocalDate resolveAttendanceDate(LocalDateTime checkInTime, SystemConfigurationEntity config) {
+        return config.getSimulatedDate() != null && config.isSimulationMode() ? config.getSimulatedDate() : checkInTime.toLocalDate();
+    }
+
+    public LocalDateTime getCurrentDateTime(SystemConfigurationEntity config) {
+        if (config.isSimulationMode() && config.getSimulatedDateTime() != null) {
+            return config.getSimulatedDateTime();
+        }
+        return LocalDateTime.now();
+    }
+
+    public void calculateLateness(AttendanceEntity entity, SystemConfigurationEntity config) {
+        LocalDateTime checkInTime = entity.getCheckInTime();
+        LocalDate attendanceDate = entity.getAttendanceDate();
+        LocalTime workStartTime = config.getWorkStartTime();
+        LocalTime workEndTime = config.getWorkEndTime();
+
+        int toleranceMinutes = config.getLateThresholdMinutes() != null ? config.getLateThresholdMinutes() : 0;
+
+        LocalDateTime workStartDateTime;
+        if (workStartTime.isAfter(workEndTime)) {
+            if (checkInTime.toLocalTime().isBefore(workEndTime)) {
+                workStartDateTime = attendanceDate.minusDays(1).atTime(workStartTime);
+            } else {
+                workStartDateTime = attendanceDate.atTime(workStartTime);
+            }
+        } else {
+            workStartDateTime = attendanceDate.atTime(workStartTime);
+        }
+
+        LocalDateTime lateThresholdTime = workStartDateTime.plusMinutes(toleranceMinutes);
+
+        if (checkInTime.isAfter(lateThresholdTime)) {
+            entity.setLate(true);
+            entity.setLatenessDuration(Duration.between(workStartDateTime, checkInTime));
+        } else {
+            entity.setLate(false);
+            entity.setLatenessDuration(Duration.ZERO);
+        }
+    }
+
+    public void applyCheckOut(AttendanceEntity entity, LocalDateTime checkOutTime) {
+        entity.setCheckOutTime(checkOutTime);
+        entity.setStatus(AttendanceStatus.CHECKED_OUT);
+        entity.setWorkedDuration(Duration.between(entity.getCheckInTime(), checkOutTime));
+        entity.setUpdatedAt(LocalDateTime.now());
+    }
+}
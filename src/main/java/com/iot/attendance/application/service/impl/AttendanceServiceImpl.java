@@ -5,15 +5,14 @@ import com.iot.attendance.application.dto.response.AttendanceResponse;
 import com.iot.attendance.application.mapper.AttendanceMapper;
 import com.iot.attendance.application.service.AttendanceService;
 import com.iot.attendance.domain.enums.AttendanceStatus;
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
 import com.iot.attendance.infrastructure.exception.BusinessException;
 import com.iot.attendance.infrastructure.exception.ResourceNotFoundException;
 import com.iot.attendance.infrastructure.firebase.FirebaseRealtimeService;
 import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
-import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
 import com.iot.attendance.infrastructure.persistence.entity.SystemConfigurationEntity;
 import com.iot.attendance.infrastructure.persistence.entity.WorkerEntity;
 import com.iot.attendance.infrastructure.persistence.repository.AttendanceRepository;
-import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
 import com.iot.attendance.infrastructure.persistence.repository.SystemConfigurationRepository;
 import com.iot.attendance.infrastructure.persistence.repository.WorkerRepository;
 import lombok.Getter;
@@ -44,91 +43,71 @@ public class AttendanceServiceImpl implements AttendanceService {
     private final AttendanceMapper attendanceMapper;
     @Getter
     private final FirebaseRealtimeService firebaseService;
-    private final RfidCardRepository rfidCardRepository;
+    private final RfidCardCache rfidCardCache;
+    private final AttendanceRules attendanceRules;
 
     @Override
     public AttendanceResponse recordCheckIn(RfidAttendanceRequest request) {
         log.info("Recording check-in for RFID: {}", request.getRfidUid());
+        return recordCheckIn(request, resolveCard(request));
+    }
 
-        String normalizedRfid = request.getRfidUid().toUpperCase().replace(" ", "").trim();
-
-        RfidCardEntity card = rfidCardRepository.findById(normalizedRfid)
-                .orElseThrow(() -> new ResourceNotFoundException("RFID Tag not registered: " + normalizedRfid));
-
-        WorkerEntity worker = card.getWorker();
-        if (worker == null) {
+    @Override
+    public AttendanceResponse recordCheckIn(RfidAttendanceRequest request, RfidCardSnapshot card) {
+        if (!card.isAssigned()) {
             throw new ResourceNotFoundException("RFID Tag unassigned");
         }
 
         SystemConfigurationEntity config = getCurrentConfiguration();
-        LocalDateTime checkInTime = request.getTimestamp() != null ? request.getTimestamp() : getCurrentDateTime(config);
+        LocalDateTime checkInTime = request.getTimestamp() != null ? request.getTimestamp() : attendanceRules.getCurrentDateTime(config);
 
         LocalTime nowTime = checkInTime.toLocalTime();
-        LocalTime workStart = config.getWorkStartTime();
-        LocalTime workEnd = config.getWorkEndTime();
-
-        LocalTime windowStart = workStart.minusMinutes(60);
-        LocalTime windowEnd = workEnd;
-
-        boolean isWindowCrossingMidnight = windowStart.isAfter(windowEnd);
-        boolean isWithinHours;
-
-        if (isWindowCrossingMidnight) {
-            isWithinHours = !nowTime.isBefore(windowStart) || !nowTime.isAfter(windowEnd);
-        } else {
-            isWithinHours = !nowTime.isBefore(windowStart) && !nowTime.isAfter(windowEnd);
-        }
-
-        if (!isWithinHours) {
+        if (!attendanceRules.isWithinCheckInWindow(nowTime, config)) {
             log.warn("Check-in RECHAZADO: Hora {} fuera del rango permitido ({} - {})",
-                    nowTime, windowStart, windowEnd);
+                    nowTime, attendanceRules.getCheckInWindowStart(config), config.getWorkEndTime());
             throw new BusinessException("Fuera de horario permitido para entrada.");
         }
 
-        attendanceRepository.findActiveAttendanceByWorkerId(worker.getId())
+        attendanceRepository.findActiveAttendanceByWorkerId(card.getWorkerId())
                 .ifPresent(existing -> { throw new BusinessException("Worker already has an active check-in"); });
 
-        LocalDate attendanceDate = config.getSimulatedDate() != null && config.isSimulationMode() ? config.getSimulatedDate() : checkInTime.toLocalDate();
+        LocalDate attendanceDate = attendanceRules.resolveAttendanceDate(checkInTime, config);
 
         AttendanceEntity entity = AttendanceEntity.builder()
-                .workerId(worker.getId())
-                .workerSnapshotName(worker.getFirstName() + " " + worker.getLastName())
-                .rfidTag(normalizedRfid)
+                .workerId(card.getWorkerId())
+                .workerSnapshotName(card.getWorkerFullName())
+                .rfidTag(card.getUid())
                 .attendanceDate(attendanceDate)
                 .checkInTime(checkInTime)
                 .status(AttendanceStatus.CHECKED_IN)
                 .build();
 
-        calculateLateness(entity, config);
+        attendanceRules.calculateLateness(entity, config);
 
         AttendanceEntity saved = attendanceRepository.save(entity);
-        return mapToResponse(saved, worker);
+        return mapToResponse(saved, card.getWorkerFullName());
     }
 
     @Override
     public AttendanceResponse recordCheckOut(RfidAttendanceRequest request) {
         log.info("Recording check-out for RFID: {}", request.getRfidUid());
+        return recordCheckOut(request, resolveCard(request));
+    }
 
-        String normalizedRfid = request.getRfidUid().toUpperCase().replace(" ", "").trim();
-        RfidCardEntity card = rfidCardRepository.findById(normalizedRfid)
-                .orElseThrow(() -> new ResourceNotFoundException("RFID Tag not registered"));
-
-        WorkerEntity worker = card.getWorker();
-        if (worker == null) throw new ResourceNotFoundException("RFID Tag unassigned");
+    @Override
+    public AttendanceResponse recordCheckOut(RfidAttendanceRequest request, RfidCardSnapshot card) {
+        if (!card.isAssigned()) throw new ResourceNotFoundException("RFID Tag unassigned");
 
-        AttendanceEntity entity = attendanceRepository.findActiveAttendanceByWorkerId(worker.getId())
+        AttendanceEntity entity = attendanceRepository.findActiveAttendanceByWorkerId(card.getWorkerId())
                 .orElseThrow(() -> new BusinessException("No active check-in found"));
 
         SystemConfigurationEntity config = getCurrentConfiguration();
-        LocalDateTime checkOutTime = request.getTimestamp() != null ? request.getTimestamp() : getCurrentDateTime(config);
+        LocalDateTime checkOutTime = request.getTimestamp() != null ? request.getTimestamp() : attendanceRules.getCurrentDateTime(config);
 
-        entity.setCheckOutTime(checkOutTime);
-        entity.setStatus(AttendanceStatus.CHECKED_OUT);
-        entity.setWorkedDuration(Duration.between(entity.getCheckInTime(), checkOutTime));
-        entity.setUpdatedAt(LocalDateTime.now());
+        attendanceRules.applyCheckOut(entity, checkOutTime);
 
         AttendanceEntity updated = attendanceRepository.save(entity);
-        return mapToResponse(updated, worker);
+        return mapToResponse(updated, card.getWorkerFullName());
     }
 
     @Override
@@ -210,34 +189,10 @@ public class AttendanceServiceImpl implements AttendanceService {
                 .stream().limit(limit).collect(Collectors.toList()));
     }
 
-    private void calculateLateness(AttendanceEntity entity, SystemConfigurationEntity config) {
-        LocalDateTime checkInTime = entity.getCheckInTime();
-        LocalDate attendanceDate = entity.getAttendanceDate();
-        LocalTime workStartTime = config.getWorkStartTime();
-        LocalTime workEndTime = config.getWorkEndTime();
-
-        int toleranceMinutes = config.getLateThresholdMinutes() != null ? config.getLateThresholdMinutes() : 0;
-
-        LocalDateTime workStartDateTime;
-        if (workStartTime.isAfter(workEndTime)) {
-            if (checkInTime.toLocalTime().isBefore(workEndTime)) {
-                workStartDateTime = attendanceDate.minusDays(1).atTime(workStartTime);
-            } else {
-                workStartDateTime = attendanceDate.atTime(workStartTime);
-            }
-        } else {
-            workStartDateTime = attendanceDate.atTime(workStartTime);
-        }
-
-        LocalDateTime lateThresholdTime = workStartDateTime.plusMinutes(toleranceMinutes);
-
-        if (checkInTime.isAfter(lateThresholdTime)) {
-            entity.setLate(true);
-            entity.setLatenessDuration(Duration.between(workStartDateTime, checkInTime));
-        } else {
-            entity.setLate(false);
-            entity.setLatenessDuration(Duration.ZERO);
-        }
+    private RfidCardSnapshot resolveCard(RfidAttendanceRequest request) {
+        String normalizedRfid = request.getRfidUid().toUpperCase().replace(" ", "").trim();
+        return rfidCardCache.get(normalizedRfid)
+                .orElseThrow(() -> new ResourceNotFoundException("RFID Tag not registered: " + normalizedRfid));
     }
 
     private SystemConfigurationEntity getCurrentConfiguration() {
@@ -245,17 +200,15 @@ public class AttendanceServiceImpl implements AttendanceService {
                 .orElseThrow(() -> new BusinessException("System configuration not found"));
     }
 
-    private LocalDateTime getCurrentDateTime(SystemConfigurationEntity config) {
-        if (config.isSimulationMode() && config.getSimulatedDateTime() != null) {
-            return config.getSimulatedDateTime();
-        }
-        return LocalDateTime.now();
+    private AttendanceResponse mapToResponse(AttendanceEntity entity, WorkerEntity worker) {
+        return mapToResponse(entity, worker != null ? worker.getFirstName() + " " + worker.getLastName() : null);
     }
 
-    private AttendanceResponse mapToResponse(AttendanceEntity entity, WorkerEntity worker) {
+    // currentName null: el trabajador ya no existe
+    private AttendanceResponse mapToResponse(AttendanceEntity entity, String currentName) {
         String workerFullName = "Desconocido";
-        if (worker != null) {
-            workerFullName = worker.getFirstName() + " " + worker.getLastName();
+        if (currentName != null) {
+            workerFullName = currentName;
         } else if (entity.getWorkerSnapshotName() != null) {
             workerFullName = entity.getWorkerSnapshotName() + " (Eliminado)";
         }
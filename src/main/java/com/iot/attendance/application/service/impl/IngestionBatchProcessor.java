@@ -0,0 +1,291 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.domain.enums.AttendanceStatus;
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
+import com.iot.attendance.infrastructure.firebase.DeviceEvent;
+import com.iot.attendance.infrastructure.firebase.IngestionEvent;
+import com.iot.attendance.infrastructure.persistence.entity.AccessLogEntity;
+import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
+import com.iot.attendance.infrastructure.persistence.entity.SystemConfigurationEntity;
+import com.iot.attendance.infrastructure.persistence.entity.WorkerEntity;
+import com.iot.attendance.infrastructure.persistence.repository.AttendanceRepository;
+import com.iot.attendance.infrastructure.persistence.repository.SystemConfigurationRepository;
+import com.iot.attendance.infrastructure.persistence.repository.WorkerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Procesa un micro-lote de eventos de dispositivo en una sola transacción:
+ * resuelve tarjetas/trabajadores/asistencias activas con una consulta por tipo y
+ * escribe asistencias, logs de acceso y lastSeen con JDBC batch. Las tarjetas salen de RfidCardCache: solo las
+ * que no están en caché se consultan.
+ * <p>
+ * La entrega es al menos una vez: los carriles confirman fuera de orden y, tras un reinicio, la recuperación del
+ * journal y el catch-up desde el cursor vuelven a entregar claves que ya estaban en la BD. Por eso cada lote
+ * reclama primero sus claves de origen en ingested_events, en la misma transacción; las que ya existían se omiten.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionBatchProcessor {
+
+    private static final String INSERT_ATTENDANCE = "INSERT INTO attendances (worker_id, worker_snapshot_name, rfid_tag, " +
+            "attendance_date, check_in_time, check_out_time, worked_duration_seconds, is_late, lateness_duration_seconds, " +
+            "status, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String UPDATE_CHECK_OUT = "UPDATE attendances SET check_out_time = ?, worked_duration_seconds = ?, " +
+            "status = ?, updated_at = ?, version = version + 1 WHERE id = ? AND version = ?";
+    private static final String INSERT_ACCESS_LOG = "INSERT INTO access_logs (worker_id, worker_snapshot_name, fingerprint_id, " +
+            "access_granted, location, status, access_time, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String CLAIM_EVENTS = "INSERT INTO ingested_events (source, push_key, ingested_at) " +
+            "SELECT source, push_key, ? FROM unnest(?::varchar[], ?::varchar[]) AS t(source, push_key) " +
+            "ON CONFLICT (source, push_key) DO NOTHING RETURNING source, push_key";
+    // Un replay histórico no debe retroceder last_seen
+    private static final String UPDATE_LAST_SEEN = "UPDATE rfid_cards SET last_seen = ?, updated_at = ? WHERE rfid_uid = ? " +
+            "AND (last_seen IS NULL OR last_seen < ?)";
+
+    private final RfidCardCache rfidCardCache;
+    private final WorkerRepository workerRepository;
+    private final AttendanceRepository attendanceRepository;
+    private final SystemConfigurationRepository configRepository;
+    private final AttendanceRules attendanceRules;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void processBatch(List<IngestionEvent> batch) {
+        List<IngestionEvent> events = claim(batch);
+        if (events.isEmpty()) return;
+        BatchContext context = resolve(events);
+
+        for (IngestionEvent event : events) {
+            switch (event.deviceEvent()) {
+                case DeviceEvent.RfidScan scan -> applyRfidScan(context, event, scan.uid());
+                case DeviceEvent.DoorOpened door -> applyAccessGranted(context, event, door.fingerprintId());
+                case DeviceEvent.AccessDenied denied -> applyAccessDenied(context, event);
+                case null -> { }
+            }
+        }
+
+        flush(context);
+
+        log.debug("Lote procesado: {} eventos | {} check-ins | {} check-outs | {} accesos",
+                events.size(), context.newAttendances.size(), context.checkOuts.size(), context.accessLogs.size());
+    }
+
+    /**
+     * Retorna los eventos aún no aplicados. Otra transacción que reclame la misma clave espera a que esta
+     * confirme y luego la omite; si esta hace rollback la clave queda libre para el reintento.
+     */
+    private List<IngestionEvent> claim(List<IngestionEvent> batch) {
+        String[] sources = new String[batch.size()];
+        String[] keys = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            sources[i] = batch.get(i).partition().path();
+            keys[i] = batch.get(i).key();
+        }
+
+        Set<String> claimed = new HashSet<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(CLAIM_EVENTS);
+            statement.setObject(1, LocalDateTime.now());
+            statement.setArray(2, connection.createArrayOf("varchar", sources));
+            statement.setArray(3, connection.createArrayOf("varchar", keys));
+            return statement;
+        }, (RowCallbackHandler) rs -> claimed.add(rs.getString(1) + "|" + rs.getString(2)));
+
+        List<IngestionEvent> fresh = new ArrayList<>(claimed.size());
+        for (IngestionEvent event : batch) {
+            // remove: una clave repetida dentro del mismo lote se aplica una sola vez
+            if (claimed.remove(event.partition().path() + "|" + event.key())) fresh.add(event);
+        }
+        if (fresh.size() < batch.size()) {
+            log.info(">> {} eventos ya ingeridos omitidos (reentrega)", batch.size() - fresh.size());
+        }
+        return fresh;
+    }
+
+    private BatchContext resolve(List<IngestionEvent> events) {
+        BatchContext context = new BatchContext();
+
+        Set<String> uids = new HashSet<>();
+        Set<Integer> fingerprintIds = new HashSet<>();
+        for (IngestionEvent event : events) {
+            if (event.deviceEvent() instanceof DeviceEvent.RfidScan scan) {
+                uids.add(scan.uid());
+            } else if (event.deviceEvent() instanceof DeviceEvent.DoorOpened door) {
+                fingerprintIds.add(door.fingerprintId());
+            }
+        }
+
+        if (!uids.isEmpty()) {
+            context.cards = rfidCardCache.getAll(uids);
+
+            Set<Long> workerIds = context.cards.values().stream()
+                    .filter(RfidCardSnapshot::isAssigned)
+                    .map(RfidCardSnapshot::getWorkerId)
+                    .collect(Collectors.toSet());
+            if (!workerIds.isEmpty()) {
+                attendanceRepository.findActiveAttendancesByWorkerIds(workerIds)
+                        .forEach(a -> context.activeAttendances.put(a.getWorkerId(), a));
+            }
+            context.config = configRepository.findLatestConfiguration().orElse(null);
+        }
+
+        if (!fingerprintIds.isEmpty()) {
+            context.workersByFingerprint = workerRepository.findByFingerprintIdIn(fingerprintIds).stream()
+                    .collect(Collectors.toMap(WorkerEntity::getFingerprintId, Function.identity()));
+        }
+        return context;
+    }
+
+    private void applyRfidScan(BatchContext context, IngestionEvent event, String uid) {
+        RfidCardSnapshot card = context.cards.get(uid);
+        if (card == null) {
+            log.warn("⚠ RFID NO REGISTRADO: {}", uid);
+            return;
+        }
+        context.lastSeen.put(uid, event.receivedAt());
+
+        if (!card.isAssigned()) {
+            log.warn("RFID {} scanned but has no worker assigned.", uid);
+            return;
+        }
+
+        Long workerId = card.getWorkerId();
+        LocalDateTime scanTime = event.receivedAt();
+        AttendanceEntity active = context.activeAttendances.get(workerId);
+
+        if (active != null) {
+            log.info("Worker {} has active check-in. Processing CHECK-OUT", workerId);
+            attendanceRules.applyCheckOut(active, scanTime);
+            context.activeAttendances.remove(workerId);
+            // Un check-in creado en este mismo lote aún no tiene ID: se inserta ya cerrado
+            if (active.getId() != null) context.checkOuts.add(active);
+            return;
+        }
+
+        log.info("Worker {} has no active check-in. Processing CHECK-IN", workerId);
+        if (context.config == null) {
+            log.warn("CHECK-IN IGNORED: System configuration not found");
+            return;
+        }
+        if (!attendanceRules.isWithinCheckInWindow(scanTime.toLocalTime(), context.config)) {
+            log.warn("CHECK-IN IGNORED: Hora {} fuera del rango permitido ({} - {})", scanTime.toLocalTime(),
+                    attendanceRules.getCheckInWindowStart(context.config), context.config.getWorkEndTime());
+            return;
+        }
+
+        AttendanceEntity entity = AttendanceEntity.builder()
+                .workerId(workerId)
+                .workerSnapshotName(card.getWorkerFullName())
+                .rfidTag(uid)
+                .attendanceDate(attendanceRules.resolveAttendanceDate(scanTime, context.config))
+                .checkInTime(scanTime)
+                .status(AttendanceStatus.CHECKED_IN)
+                .build();
+        attendanceRules.calculateLateness(entity, context.config);
+
+        context.newAttendances.add(entity);
+        context.activeAttendances.put(workerId, entity);
+    }
+
+    private void applyAccessGranted(BatchContext context, IngestionEvent event, int fingerprintId) {
+        log.info("Logging access GRANTED for fingerprint ID: {}", fingerprintId);
+        WorkerEntity worker = context.workersByFingerprint.get(fingerprintId);
+        context.accessLogs.add(AccessLogEntity.builder()
+                .workerId(worker != null ? worker.getId() : null)
+                .workerSnapshotName(worker != null ? worker.getFirstName() + " " + worker.getLastName() : "Desconocido")
+                .fingerprintId(fingerprintId)
+                .accessGranted(true)
+                .location(siteLocation(event))
+                .status("GRANTED")
+                .accessTime(event.receivedAt())
+                .build());
+    }
+
+    private void applyAccessDenied(BatchContext context, IngestionEvent event) {
+        log.info(">> [ACCESO DENEGADO DETECTADO]");
+        context.accessLogs.add(AccessLogEntity.builder()
+                .workerSnapshotName("No Registrado / Desconocido")
+                .accessGranted(false)
+                .location(siteLocation(event))
+                .status("DENIED")
+                .accessTime(event.receivedAt())
+                .build());
+    }
+
+    // Con varias sedes el acceso queda etiquetado con la sede que lo originó; la sede por defecto no se anota
+    private String siteLocation(IngestionEvent event) {
+        return event.partition().isDefaultSite() ? null : event.partition().site();
+    }
+
+    private void flush(BatchContext context) {
+        LocalDateTime now = LocalDateTime.now();
+
+        if (!context.newAttendances.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ATTENDANCE, context.newAttendances.stream()
+                    .map(a -> new Object[]{
+                            a.getWorkerId(), a.getWorkerSnapshotName(), a.getRfidTag(), a.getAttendanceDate(),
+                            a.getCheckInTime(), a.getCheckOutTime(), a.getWorkedDurationSeconds(), a.isLate(),
+                            a.getLatenessDurationSeconds(), a.getStatus().name(), now, now})
+                    .collect(Collectors.toList()));
+        }
+
+        if (!context.checkOuts.isEmpty()) {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_CHECK_OUT, context.checkOuts.stream()
+                    .map(a -> new Object[]{
+                            a.getCheckOutTime(), a.getWorkedDurationSeconds(), a.getStatus().name(), now,
+                            a.getId(), a.getVersion()})
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    throw new IllegalStateException("Asistencia modificada concurrentemente: " + context.checkOuts.get(i).getId());
+                }
+            }
+        }
+
+        if (!context.accessLogs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ACCESS_LOG, context.accessLogs.stream()
+                    .map(l -> new Object[]{
+                            l.getWorkerId(), l.getWorkerSnapshotName(), l.getFingerprintId(), l.isAccessGranted(),
+                            l.getLocation(), l.getStatus(), l.getAccessTime(), now})
+                    .collect(Collectors.toList()));
+        }
+
+        if (!context.lastSeen.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_SEEN, context.lastSeen.entrySet().stream()
+                    .map(e -> new Object[]{e.getValue(), now, e.getKey(), e.getValue()})
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    // Clave de partición: tarjeta RFID o huella, de modo que los eventos de una misma persona no se reordenen
+    public String partitionKey(IngestionEvent event) {
+        return switch (event.deviceEvent()) {
+            case DeviceEvent.RfidScan scan -> scan.uid();
+            case DeviceEvent.DoorOpened door -> "FP" + door.fingerprintId();
+            case DeviceEvent.AccessDenied denied -> event.key();
+            case null -> event.key();
+        };
+    }
+
+    private static class BatchContext {
+        private Map<String, RfidCardSnapshot> cards = Map.of();
+        private Map<Integer, WorkerEntity> workersByFingerprint = Map.of();
+        private SystemConfigurationEntity config;
+        private final Map<Long, AttendanceEntity> activeAttendances = new HashMap<>();
+        private final List<AttendanceEntity> newAttendances = new ArrayList<>();
+        private final List<AttendanceEntity> checkOuts = new ArrayList<>();
+        private final List<AccessLogEntity> accessLogs = new ArrayList<>();
+        private final Map<String, LocalDateTime> lastSeen = new LinkedHashMap<>();
+    }
+}
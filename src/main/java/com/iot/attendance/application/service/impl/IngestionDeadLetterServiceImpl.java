@@ -0,0 +1,184 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.application.dto.response.DeadLetterResponse;
+import com.iot.attendance.application.service.IngestionDeadLetterService;
+import com.iot.attendance.infrastructure.exception.ResourceNotFoundException;
+import com.iot.attendance.infrastructure.firebase.DeviceMessageParser;
+import com.iot.attendance.infrastructure.firebase.FirebaseLogNode;
+import com.iot.attendance.infrastructure.firebase.IngestionEvent;
+import com.iot.attendance.infrastructure.firebase.IngestionPartitions;
+import com.iot.attendance.infrastructure.firebase.LogPartition;
+import com.iot.attendance.infrastructure.persistence.entity.IngestionDeadLetterEntity;
+import com.iot.attendance.infrastructure.persistence.repository.IngestionDeadLetterRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Eventos de ingesta que fallaron incluso de forma aislada. El cursor de Firebase ya los dejó atrás,
+ * así que esta tabla es su única copia: se reintentan con backoff exponencial y, agotados los intentos,
+ * quedan en EXHAUSTED hasta que un administrador los reprocese o purgue.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionDeadLetterServiceImpl implements IngestionDeadLetterService {
+
+    @Value("${firebase.ingestion.dead-letter.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${firebase.ingestion.dead-letter.initial-backoff-ms:30000}")
+    private long initialBackoffMs;
+
+    @Value("${firebase.ingestion.dead-letter.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${firebase.ingestion.dead-letter.retry-batch-size:50}")
+    private int retryBatchSize;
+
+    private final IngestionDeadLetterRepository deadLetterRepository;
+    private final IngestionBatchProcessor batchProcessor;
+    private final DeviceMessageParser messageParser;
+    private final IngestionPartitions partitions;
+
+    @Override
+    public void record(IngestionEvent event, Exception error) {
+        IngestionDeadLetterEntity entity = deadLetterRepository
+                .findByNodeAndPushKey(event.node().name(), event.key())
+                .orElseGet(() -> IngestionDeadLetterEntity.builder()
+                        .site(event.partition().site())
+                        .node(event.node().name())
+                        .pushKey(event.key())
+                        .payload(event.message())
+                        .receivedAt(event.receivedAt())
+                        .attemptCount(0)
+                        .build());
+
+        markFailed(entity, error);
+        deadLetterRepository.save(entity);
+        log.warn("⚠ Evento {} ({}) enviado a dead-letter: {}", event.partition().getId(), event.key(), entity.getLastError());
+    }
+
+    @Override
+    public int retryDue() {
+        List<IngestionDeadLetterEntity> due = deadLetterRepository.findDue(LocalDateTime.now(), PageRequest.of(0, retryBatchSize));
+        int recovered = 0;
+        for (IngestionDeadLetterEntity entity : due) {
+            if (reprocess(entity)) recovered++;
+        }
+        if (!due.isEmpty()) {
+            log.info(">> Dead-letter: {}/{} eventos recuperados", recovered, due.size());
+        }
+        return recovered;
+    }
+
+    @Override
+    public List<DeadLetterResponse> getDeadLetters(String status) {
+        List<IngestionDeadLetterEntity> entities = status == null
+                ? deadLetterRepository.findAllByOrderByCreatedAtDesc()
+                : deadLetterRepository.findByStatusOrderByCreatedAtDesc(status.toUpperCase());
+        return entities.stream().map(this::toResponse).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean replay(Long id) {
+        IngestionDeadLetterEntity entity = deadLetterRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Dead-letter not found with ID: " + id));
+        // Un reintento manual reinicia el presupuesto de reintentos automáticos
+        entity.setAttemptCount(0);
+        return reprocess(entity);
+    }
+
+    @Override
+    public int replayAll() {
+        int recovered = 0;
+        for (IngestionDeadLetterEntity entity : deadLetterRepository.findAllByOrderByReceivedAtAsc()) {
+            entity.setAttemptCount(0);
+            if (reprocess(entity)) recovered++;
+        }
+        return recovered;
+    }
+
+    @Override
+    public void delete(Long id) {
+        if (!deadLetterRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Dead-letter not found with ID: " + id);
+        }
+        deadLetterRepository.deleteById(id);
+    }
+
+    @Override
+    public long purge(String status) {
+        if (status == null) {
+            long count = deadLetterRepository.count();
+            deadLetterRepository.deleteAllInBatch();
+            return count;
+        }
+        return deadLetterRepository.deleteByStatus(status.toUpperCase());
+    }
+
+    // processBatch abre su propia transacción: un fallo no arrastra la actualización del dead-letter
+    private boolean reprocess(IngestionDeadLetterEntity entity) {
+        FirebaseLogNode node = FirebaseLogNode.valueOf(entity.getNode());
+        String site = entity.getSite() != null ? entity.getSite() : LogPartition.DEFAULT_SITE;
+        try {
+            LogPartition partition = partitions.find(site, node)
+                    .orElseThrow(() -> new IllegalStateException("Sede no configurada: " + site));
+            IngestionEvent event = new IngestionEvent(partition, entity.getPushKey(), entity.getPayload(),
+                    messageParser.parse(node, entity.getPayload()), entity.getReceivedAt());
+            batchProcessor.processBatch(List.of(event));
+            deadLetterRepository.delete(entity);
+            log.info("✓ Dead-letter {} ({}) reprocesado", partition.getId(), entity.getPushKey());
+            return true;
+        } catch (Exception e) {
+            markFailed(entity, e);
+            deadLetterRepository.save(entity);
+            return false;
+        }
+    }
+
+    private void markFailed(IngestionDeadLetterEntity entity, Exception error) {
+        int attempts = entity.getAttemptCount() + 1;
+        entity.setAttemptCount(attempts);
+        entity.setLastError(describe(error));
+
+        if (attempts >= maxAttempts) {
+            entity.setStatus(IngestionDeadLetterEntity.STATUS_EXHAUSTED);
+            entity.setNextAttemptAt(null);
+            return;
+        }
+        long backoff = Math.min(initialBackoffMs << Math.min(attempts - 1, 20), maxBackoffMs);
+        entity.setStatus(IngestionDeadLetterEntity.STATUS_PENDING);
+        entity.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoff)));
+    }
+
+    private String describe(Exception error) {
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+        String message = root.getClass().getSimpleName() + ": " + root.getMessage();
+        return message.length() > 2000 ? message.substring(0, 2000) : message;
+    }
+
+    private DeadLetterResponse toResponse(IngestionDeadLetterEntity entity) {
+        return DeadLetterResponse.builder()
+                .id(entity.getId())
+                .site(entity.getSite())
+                .node(entity.getNode())
+                .pushKey(entity.getPushKey())
+                .payload(entity.getPayload())
+                .lastError(entity.getLastError())
+                .attemptCount(entity.getAttemptCount())
+                .status(entity.getStatus())
+                .receivedAt(entity.getReceivedAt())
+                .nextAttemptAt(entity.getNextAttemptAt())
+                .createdAt(entity.getCreatedAt())
+                .build();
+    }
+}
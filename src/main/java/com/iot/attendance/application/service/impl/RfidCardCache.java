@@ -0,0 +1,162 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
+import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
+import com.iot.attendance.infrastructure.persistence.entity.WorkerEntity;
+import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Caché read-through de tarjetas RFID: UID normalizado -> trabajador asignado (id, nombre, estado).
+ * Un marcaje se resuelve con a lo sumo una consulta (tarjeta + trabajador en un JOIN) y, en régimen, con ninguna.
+ * También se recuerdan los UIDs no registrados, para que una tarjeta desconocida no consulte la BD en cada lectura.
+ * <p>
+ * WorkerServiceImpl invalida al asignar o liberar tarjetas y al modificar o borrar trabajadores, al terminar la
+ * transacción. Una carga que se cruzó con una invalidación no queda guardada. Entre réplicas no hay aviso:
+ * ttl-seconds acota cuánto puede durar un dato viejo en las demás.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RfidCardCache {
+
+    @Value("${attendance.rfid-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${attendance.rfid-cache.max-size:10000}")
+    private int maxSize;
+
+    private final RfidCardRepository rfidCardRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Avanza con cada invalidación: una carga iniciada antes no puede dejar su resultado en la caché
+    private final AtomicLong version = new AtomicLong();
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("attendance.rfid.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("attendance.rfid.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("attendance.rfid.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    // Vacío si la tarjeta no está registrada
+    public Optional<RfidCardSnapshot> get(String uid) {
+        return Optional.ofNullable(getAll(List.of(uid)).get(uid));
+    }
+
+    // Tarjetas registradas entre los UIDs pedidos; las que no están en caché se cargan juntas en una consulta
+    public Map<String, RfidCardSnapshot> getAll(Collection<String> uids) {
+        Map<String, RfidCardSnapshot> resolved = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        long now = System.nanoTime();
+        for (String uid : uids) {
+            Entry entry = entries.get(uid);
+            if (entry == null || entry.expiresAt() - now <= 0) {
+                missing.add(uid);
+            } else if (entry.card() != null) {
+                resolved.put(uid, entry.card());
+            }
+        }
+        hits.increment(uids.size() - missing.size());
+        if (missing.isEmpty()) return resolved;
+
+        misses.increment(missing.size());
+        long loadVersion = version.get();
+        for (RfidCardEntity card : rfidCardRepository.findAllWithWorkerByUidIn(missing)) {
+            resolved.put(card.getUid(), toSnapshot(card));
+        }
+        store(missing, resolved, loadVersion);
+        return resolved;
+    }
+
+    // Tarjeta asignada, liberada o creada
+    public void invalidate(String uid) {
+        afterTransaction(() -> evict(e -> e.getKey().equals(uid)));
+    }
+
+    // Nombre, estado o borrado del trabajador: afecta a todas sus tarjetas en caché
+    public void invalidateWorker(Long workerId) {
+        afterTransaction(() -> evict(e -> {
+            RfidCardSnapshot card = e.getValue().card();
+            return card != null && workerId.equals(card.getWorkerId());
+        }));
+    }
+
+    private void store(Set<String> uids, Map<String, RfidCardSnapshot> loaded, long loadVersion) {
+        if (entries.size() + uids.size() > maxSize) {
+            long now = System.nanoTime();
+            entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+            if (entries.size() + uids.size() > maxSize) {
+                log.warn("⚠ Caché RFID llena ({} entradas): se vacía", entries.size());
+                entries.clear();
+            }
+        }
+
+        long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Map<String, Entry> stored = new HashMap<>();
+        for (String uid : uids) {
+            Entry entry = new Entry(loaded.get(uid), expiresAt);
+            entries.put(uid, entry);
+            stored.put(uid, entry);
+        }
+        // Una invalidación ocurrida durante la carga pudo borrar antes de este put: se deshace lo guardado
+        if (version.get() != loadVersion) {
+            stored.forEach((uid, entry) -> entries.remove(uid, entry));
+        }
+    }
+
+    private void evict(Predicate<Map.Entry<String, Entry>> matcher) {
+        version.incrementAndGet();
+        entries.entrySet().removeIf(matcher);
+    }
+
+    // Tras el commit, no antes: otra lectura podría volver a cargar el valor anterior mientras la transacción sigue abierta
+    private void afterTransaction(Runnable invalidation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidation.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidation.run();
+            }
+        });
+    }
+
+    private static RfidCardSnapshot toSnapshot(RfidCardEntity card) {
+        WorkerEntity worker = card.getWorker();
+        if (worker == null) return RfidCardSnapshot.unassigned(card.getUid());
+        return new RfidCardSnapshot(card.getUid(), worker.getId(),
+                worker.getFirstName() + " " + worker.getLastName(), worker.getStatus());
+    }
+
+    // card null: UID no registrado
+    private record Entry(RfidCardSnapshot card, long expiresAt) {
+    }
+}
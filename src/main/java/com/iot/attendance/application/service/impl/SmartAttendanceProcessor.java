@@ -2,13 +2,11 @@ package com.iot.attendance.application.service.impl;
 
 import com.iot.attendance.application.dto.request.RfidAttendanceRequest;
 import com.iot.attendance.application.service.AttendanceService;
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
 import com.iot.attendance.infrastructure.exception.BusinessException;
 import com.iot.attendance.infrastructure.exception.ResourceNotFoundException;
 import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
-import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
-import com.iot.attendance.infrastructure.persistence.entity.WorkerEntity;
 import com.iot.attendance.infrastructure.persistence.repository.AttendanceRepository;
-import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -21,7 +19,7 @@ import java.util.Optional;
 @Slf4j
 public class SmartAttendanceProcessor {
 
-    private final RfidCardRepository rfidCardRepository;
+    private final RfidCardCache rfidCardCache;
     private final AttendanceRepository attendanceRepository;
     private final AttendanceService attendanceService;
 
@@ -30,24 +28,24 @@ public class SmartAttendanceProcessor {
         String uid = request.getRfidUid().toUpperCase().replace(" ", "").trim();
         log.info("Processing smart RFID event: {}", uid);
 
-        RfidCardEntity card = rfidCardRepository.findById(uid)
+        RfidCardSnapshot card = rfidCardCache.get(uid)
                 .orElseThrow(() -> new ResourceNotFoundException("RFID not found"));
 
-        WorkerEntity worker = card.getWorker();
-        if (worker == null) {
+        if (!card.isAssigned()) {
             log.warn("RFID {} scanned but has no worker assigned.", uid);
             return;
         }
 
-        Optional<AttendanceEntity> activeAttendance = attendanceRepository.findActiveAttendanceByWorkerId(worker.getId());
+        Optional<AttendanceEntity> activeAttendance = attendanceRepository.findActiveAttendanceByWorkerId(card.getWorkerId());
 
+        // La tarjeta ya resuelta baja al servicio: no se vuelve a consultar
         if (activeAttendance.isPresent()) {
-            log.info("Worker {} has active check-in. Processing CHECK-OUT", worker.getId());
-            attendanceService.recordCheckOut(request);
+            log.info("Worker {} has active check-in. Processing CHECK-OUT", card.getWorkerId());
+            attendanceService.recordCheckOut(request, card);
         } else {
-            log.info("Worker {} has no active check-in. Processing CHECK-IN", worker.getId());
+            log.info("Worker {} has no active check-in. Processing CHECK-IN", card.getWorkerId());
             try {
-                attendanceService.recordCheckIn(request);
+                attendanceService.recordCheckIn(request, card);
             } catch (BusinessException e) {
                 log.warn("CHECK-IN IGNORED: {}", e.getMessage());
             }
@@ -0,0 +1,169 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.application.dto.request.CreateWorkerRequest;
+import com.iot.attendance.application.dto.response.EnrollmentJobResponse;
+import com.iot.attendance.application.dto.response.WorkerResponse;
+import com.iot.attendance.application.service.WorkerEnrollmentService;
+import com.iot.attendance.application.service.WorkerService;
+import com.iot.attendance.domain.enums.EnrollmentStatus;
+import com.iot.attendance.infrastructure.exception.BusinessException;
+import com.iot.attendance.infrastructure.exception.ResourceAlreadyExistsException;
+import com.iot.attendance.infrastructure.exception.ResourceNotFoundException;
+import com.iot.attendance.infrastructure.firebase.DeviceCommandBus;
+import com.iot.attendance.infrastructure.persistence.repository.WorkerRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registro biométrico como trabajo asíncrono: la petición solo crea el job y retorna su ID.
+ * PENDING (en cola del bus de comandos) -> WAITING_FINGERPRINT (REGISTRAR enviado) -> SAVING (el ESP32 devolvió el ID) -> COMPLETED | FAILED.
+ * Mientras se espera la huella no se ocupa ningún hilo ni conexión a la BD: la transacción se abre recién en
+ * WorkerService.createEnrolledWorker, cuando el ID ya llegó. El sensor es uno solo, así que solo se admite
+ * un registro en curso a la vez. Los jobs viven en memoria y se purgan tras la retención configurada.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WorkerEnrollmentServiceImpl implements WorkerEnrollmentService {
+
+    @Value("${workers.enrollment.timeout-seconds:40}")
+    private int timeoutSeconds;
+
+    @Value("${workers.enrollment.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final WorkerService workerService;
+    private final WorkerRepository workerRepository;
+    private final DeviceCommandBus commandBus;
+
+    private final Map<String, EnrollmentJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicReference<String> activeJobId = new AtomicReference<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "worker-enrollment");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public EnrollmentJobResponse startEnrollment(CreateWorkerRequest request) {
+        if (workerRepository.existsByDocumentNumber(request.getDocumentNumber())) {
+            throw new ResourceAlreadyExistsException("Documento ya existe: " + request.getDocumentNumber());
+        }
+
+        EnrollmentJob job = new EnrollmentJob(UUID.randomUUID().toString(), request);
+        if (!activeJobId.compareAndSet(null, job.id)) {
+            throw new BusinessException("Ya hay un registro de huella en curso (job " + activeJobId.get() + ")");
+        }
+        jobs.put(job.id, job);
+        log.info(">> Job de registro {} creado para documento {}", job.id, request.getDocumentNumber());
+
+        // REGISTRAR pasa por el bus de comandos: espera su turno si el dispositivo está ocupado con otro comando
+        commandBus.register(Duration.ofSeconds(timeoutSeconds), () -> job.transition(EnrollmentStatus.WAITING_FINGERPRINT))
+                .thenApplyAsync(fingerprintId -> {
+                    log.info("¡Huella capturada exitosamente! ID: {} (job {})", fingerprintId, job.id);
+                    job.fingerprintId = fingerprintId;
+                    job.transition(EnrollmentStatus.SAVING);
+                    return workerService.createEnrolledWorker(request, fingerprintId);
+                }, executor)
+                .whenCompleteAsync((worker, error) -> finish(job, worker, error), executor);
+
+        return job.toResponse();
+    }
+
+    @Override
+    public EnrollmentJobResponse getJob(String jobId) {
+        return findJob(jobId).toResponse();
+    }
+
+    @Override
+    public CompletableFuture<EnrollmentJobResponse> awaitCompletion(String jobId) {
+        return findJob(jobId).completion;
+    }
+
+    // Los jobs terminados se conservan un tiempo para que el cliente pueda consultar el resultado
+    @Scheduled(fixedDelay = 60000)
+    public void purgeFinishedJobs() {
+        LocalDateTime limit = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.status.isTerminal() && job.updatedAt.isBefore(limit));
+    }
+
+    private void finish(EnrollmentJob job, WorkerResponse worker, Throwable error) {
+        // Se deja el ESP32 en reposo en cualquier caso: el registro terminó
+        commandBus.reset();
+
+        if (error == null) {
+            job.worker = worker;
+            job.transition(EnrollmentStatus.COMPLETED);
+            log.info("✓ Job de registro {} completado: trabajador ID {}", job.id, worker.getId());
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            job.error = cause.getMessage();
+            job.transition(EnrollmentStatus.FAILED);
+            log.warn("⚠ Job de registro {} falló: {}", job.id, cause.getMessage());
+        }
+        activeJobId.compareAndSet(job.id, null);
+        job.completion.complete(job.toResponse());
+    }
+
+    private EnrollmentJob findJob(String jobId) {
+        EnrollmentJob job = jobs.get(jobId);
+        if (job == null) throw new ResourceNotFoundException("Enrollment job not found: " + jobId);
+        return job;
+    }
+
+    private static class EnrollmentJob {
+
+        private final String id;
+        private final CreateWorkerRequest request;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final CompletableFuture<EnrollmentJobResponse> completion = new CompletableFuture<>();
+        private volatile EnrollmentStatus status = EnrollmentStatus.PENDING;
+        private volatile LocalDateTime updatedAt = createdAt;
+        private volatile Integer fingerprintId;
+        private volatile WorkerResponse worker;
+        private volatile String error;
+
+        EnrollmentJob(String id, CreateWorkerRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        void transition(EnrollmentStatus next) {
+            status = next;
+            updatedAt = LocalDateTime.now();
+        }
+
+        EnrollmentJobResponse toResponse() {
+            return EnrollmentJobResponse.builder()
+                    .jobId(id)
+                    .status(status)
+                    .documentNumber(request.getDocumentNumber())
+                    .fingerprintId(fingerprintId)
+                    .worker(worker)
+                    .error(error)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+    }
+}
@@ -3,19 +3,22 @@ package com.iot.attendance.application.service.impl;
 import com.iot.attendance.application.dto.request.AssignFingerprintRequest;
 import com.iot.attendance.application.dto.request.CreateWorkerRequest;
 import com.iot.attendance.application.dto.request.UpdateWorkerRequest;
+import com.iot.attendance.application.dto.response.WorkerDeletionResponse;
 import com.iot.attendance.application.dto.response.WorkerResponse;
 import com.iot.attendance.application.mapper.WorkerMapper;
 import com.iot.attendance.application.service.WorkerService;
 import com.iot.attendance.domain.enums.WorkerStatus;
 import com.iot.attendance.infrastructure.exception.ResourceAlreadyExistsException;
 import com.iot.attendance.infrastructure.exception.ResourceNotFoundException;
-import com.iot.attendance.infrastructure.firebase.FirebaseRealtimeService;
+import com.iot.attendance.infrastructure.firebase.FirebaseOutbox;
 import com.iot.attendance.infrastructure.persistence.entity.AccessLogEntity;
 import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
+import com.iot.attendance.infrastructure.persistence.entity.FirebaseOutboxEntity;
 import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
 import com.iot.attendance.infrastructure.persistence.entity.WorkerEntity;
 import com.iot.attendance.infrastructure.persistence.repository.AccessLogRepository;
 import com.iot.attendance.infrastructure.persistence.repository.AttendanceRepository;
+import com.iot.attendance.infrastructure.persistence.repository.FirebaseOutboxRepository;
 import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
 import com.iot.attendance.infrastructure.persistence.repository.WorkerRepository;
 import lombok.Getter;
@@ -28,6 +31,8 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,31 +45,23 @@ public class WorkerServiceImpl implements WorkerService {
     private final RfidCardRepository rfidCardRepository;
     private final AttendanceRepository attendanceRepository;
     private final AccessLogRepository accessLogRepository;
+    private final FirebaseOutbox firebaseOutbox;
+    private final FirebaseOutboxRepository outboxRepository;
+    private final RfidCardCache rfidCardCache;
 
     @Getter
     private final WorkerMapper workerMapper;
-    private final FirebaseRealtimeService firebaseService;
 
     @Override
-    public WorkerResponse createWorker(CreateWorkerRequest request) {
-        log.info("Iniciando creación de trabajador con Registro Biométrico Síncrono...");
-
+    public WorkerResponse createEnrolledWorker(CreateWorkerRequest request, Integer newFingerprintId) {
+        // Se revalida dentro de la transacción: pudo crearse otro trabajador mientras se esperaba la huella
         if (workerRepository.existsByDocumentNumber(request.getDocumentNumber())) {
             throw new ResourceAlreadyExistsException("Documento ya existe: " + request.getDocumentNumber());
         }
-
-        // 1. Activar Hardware y ESPERAR huella (Bloqueante 40s)
-        firebaseService.startRegistrationMode();
-        Integer newFingerprintId = firebaseService.waitForNewFingerprintId(40);
-
-        log.info("¡Huella capturada exitosamente! ID: {}", newFingerprintId);
-
         if (workerRepository.existsByFingerprintId(newFingerprintId)) {
-            firebaseService.setAdminCommand("NADA");
             throw new ResourceAlreadyExistsException("La huella ID " + newFingerprintId + " ya pertenece a otro trabajador.");
         }
 
-        // 2. Guardar Worker
         WorkerEntity entity = WorkerEntity.builder()
                 .firstName(request.getFirstName())
                 .lastName(request.getLastName())
@@ -78,10 +75,7 @@ public class WorkerServiceImpl implements WorkerService {
                 .build();
 
         WorkerEntity saved = workerRepository.save(entity);
-
-        // 3. Resetear Hardware
-        firebaseService.setAdminCommand("NADA");
-        firebaseService.setAdminState("LISTO");
+        log.info("✓ Trabajador ID {} creado con huella ID {}", saved.getId(), newFingerprintId);
 
         return mapToResponse(saved);
     }
@@ -98,12 +92,29 @@ public class WorkerServiceImpl implements WorkerService {
         if (request.getHasRestrictedAreaAccess() != null) entity.setHasRestrictedAreaAccess(request.getHasRestrictedAreaAccess());
 
         entity.setUpdatedAt(LocalDateTime.now());
+        rfidCardCache.invalidateWorker(id);
         return mapToResponse(workerRepository.save(entity));
     }
 
     @Override
     public void deleteWorker(Long workerId) {
-        WorkerEntity worker = findWorkerEntityById(workerId);
+        detachAndDelete(findWorkerEntityById(workerId));
+    }
+
+    @Override
+    public List<WorkerDeletionResponse> deleteWorkers(List<Long> workerIds) {
+        // Todo o nada: si algún ID no existe no se borra ninguno
+        List<WorkerEntity> workers = workerIds.stream().distinct().map(this::findWorkerEntityById).toList();
+        List<WorkerDeletionResponse> deletions = new ArrayList<>();
+        for (WorkerEntity worker : workers) {
+            deletions.add(detachAndDelete(worker));
+        }
+        log.info("✓ {} trabajadores eliminados en lote", workers.size());
+        return deletions;
+    }
+
+    private WorkerDeletionResponse detachAndDelete(WorkerEntity worker) {
+        Long workerId = worker.getId();
         String fullName = worker.getFirstName() + " " + worker.getLastName();
 
         log.info("Iniciando proceso de borrado seguro para Worker ID: {}", workerId);
@@ -132,22 +143,7 @@ public class WorkerServiceImpl implements WorkerService {
         attendanceRepository.saveAll(attendances);
         log.info("✓ {} registros de asistencia desvinculados y preservados.", attendances.size());
 
-        // 2. BORRAR HUELLA DEL HARDWARE
-        if (worker.getFingerprintId() != null) {
-            log.info(">> Enviando comando BORRAR huella ID {} al hardware", worker.getFingerprintId());
-            firebaseService.setTargetFingerprintId(worker.getFingerprintId());
-            firebaseService.setAdminCommand("BORRAR");
-            firebaseService.setAdminState("BORRANDO_USUARIO");
-
-            try {
-                firebaseService.waitForDeletionComplete(10);
-            } catch (Exception e) {
-                log.error("Error esperando confirmación hardware: {}", e.getMessage());
-                // Continuamos, la prioridad es limpiar la BD
-            }
-        }
-
-        // 3. LIBERAR TARJETAS RFID (Devolver al pool)
+        // 2. LIBERAR TARJETAS RFID (Devolver al pool)
         if (worker.getRfidCards() != null && !worker.getRfidCards().isEmpty()) {
             List<RfidCardEntity> cardsToRelease = new ArrayList<>(worker.getRfidCards());
             for (RfidCardEntity card : cardsToRelease) {
@@ -159,9 +155,44 @@ public class WorkerServiceImpl implements WorkerService {
             worker.getRfidCards().clear();
         }
 
-        // 4. ELIMINAR TRABAJADOR DE BASE DE DATOS
+        // 3. ELIMINAR TRABAJADOR DE BASE DE DATOS
         workerRepository.delete(worker);
+        rfidCardCache.invalidateWorker(workerId);
         log.info("✓ Trabajador ID {} eliminado completamente de la tabla workers.", workerId);
+
+        // 4. BORRADO DE HUELLA EN EL SENSOR: va al outbox en esta transacción; si hay rollback no se envía
+        Integer fingerprintId = worker.getFingerprintId();
+        Long outboxId = fingerprintId != null ? firebaseOutbox.appendFingerprintDeletion(fingerprintId) : null;
+        return WorkerDeletionResponse.builder()
+                .workerId(workerId)
+                .fingerprintId(fingerprintId)
+                .outboxId(outboxId)
+                .deviceStatus(outboxId != null ? "QUEUED" : "NO_FINGERPRINT")
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<WorkerDeletionResponse> getFingerprintDeletionStatus(List<Long> outboxIds) {
+        Map<Long, FirebaseOutboxEntity> entries = outboxRepository.findAllById(outboxIds).stream()
+                .collect(Collectors.toMap(FirebaseOutboxEntity::getId, Function.identity()));
+
+        return outboxIds.stream().distinct().map(outboxId -> {
+            FirebaseOutboxEntity entry = entries.get(outboxId);
+            // El relay borra la fila recién cuando el ESP32 confirmó el borrado
+            if (entry == null) {
+                return WorkerDeletionResponse.builder().outboxId(outboxId).deviceStatus("ACKNOWLEDGED").build();
+            }
+            String status = FirebaseOutboxEntity.STATUS_FAILED.equals(entry.getStatus()) ? "FAILED"
+                    : FirebaseOutboxEntity.STATUS_UNCERTAIN.equals(entry.getStatus()) ? "UNCERTAIN"
+                    : entry.getAttemptCount() > 0 ? "RETRYING" : "QUEUED";
+            return WorkerDeletionResponse.builder()
+                    .outboxId(outboxId)
+                    .fingerprintId(Integer.valueOf(entry.getPayload()))
+                    .deviceStatus(status)
+                    .error(entry.getLastError())
+                    .build();
+        }).toList();
     }
 
     @Override
@@ -253,6 +284,7 @@ public class WorkerServiceImpl implements WorkerService {
         card.setUpdatedAt(LocalDateTime.now());
         rfidCardRepository.save(card);
         worker.getRfidCards().add(card);
+        rfidCardCache.invalidate(normalizedTag);
 
         return mapToResponse(worker);
     }
@@ -270,6 +302,7 @@ public class WorkerServiceImpl implements WorkerService {
         card.setWorker(null);
         card.setUpdatedAt(LocalDateTime.now());
         rfidCardRepository.save(card);
+        rfidCardCache.invalidate(normalizedTag);
 
         return mapToResponse(findWorkerEntityById(workerId));
     }
@@ -292,6 +325,7 @@ public class WorkerServiceImpl implements WorkerService {
     public WorkerResponse activateWorker(Long workerId) {
         WorkerEntity entity = findWorkerEntityById(workerId);
         entity.setStatus(WorkerStatus.ACTIVE);
+        rfidCardCache.invalidateWorker(workerId);
         return mapToResponse(workerRepository.save(entity));
     }
 
@@ -299,6 +333,7 @@ public class WorkerServiceImpl implements WorkerService {
     public WorkerResponse deactivateWorker(Long workerId) {
         WorkerEntity entity = findWorkerEntityById(workerId);
         entity.setStatus(WorkerStatus.INACTIVE);
+        rfidCardCache.invalidateWorker(workerId);
         return mapToResponse(workerRepository.save(entity));
     }
 
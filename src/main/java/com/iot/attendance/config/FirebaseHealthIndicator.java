@@ -0,0 +1,40 @@
+package com.iot.attendance.config;
+
+import com.iot.attendance.infrastructure.firebase.FirebaseAdminStateWatcher;
+import com.iot.attendance.infrastructure.firebase.FirebaseOutboxRelay;
+import com.iot.attendance.infrastructure.firebase.FirebaseResilience;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estado de la integración con Firebase en /actuator/health (componente "firebase").
+ * Con el circuito abierto o en prueba se reporta DEGRADED y no DOWN: Firebase es compartido por todas las
+ * réplicas, sacar una del balanceador no ayuda, y el resto de la API sigue respondiendo.
+ */
+@Component
+@RequiredArgsConstructor
+public class FirebaseHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED");
+
+    private final FirebaseResilience resilience;
+    private final FirebaseAdminStateWatcher stateWatcher;
+    private final FirebaseOutboxRelay outboxRelay;
+
+    @Override
+    public Health health() {
+        FirebaseResilience.State state = resilience.getState();
+        return Health.status(state == FirebaseResilience.State.CLOSED ? Status.UP : DEGRADED)
+                .withDetail("circuit", state)
+                .withDetail("failureRate", resilience.getFailureRate())
+                .withDetail("windowCalls", resilience.getWindowCount())
+                .withDetail("bulkheadAvailable", resilience.getAvailableCalls())
+                .withDetail("adminStreamConnected", stateWatcher.isConnected())
+                .withDetail("outboxPending", outboxRelay.getPendingCount())
+                .withDetail("outboxUncertain", outboxRelay.getUncertainCount())
+                .build();
+    }
+}
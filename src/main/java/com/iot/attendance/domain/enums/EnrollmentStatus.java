@@ -0,0 +1,13 @@
+package com.iot.attendance.domain.enums;
+
+public enum EnrollmentStatus {
+    PENDING,
+    WAITING_FINGERPRINT,
+    SAVING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -0,0 +1,36 @@
+package com.iot.attendance.domain.valueobjects;
+
+import com.iot.attendance.domain.enums.WorkerStatus;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+// Tarjeta RFID registrada y el trabajador asignado en el momento de leerla; sin trabajador los campos worker* son null
+@Getter
+@EqualsAndHashCode
+@ToString
+public class RfidCardSnapshot {
+
+    private final String uid;
+    private final Long workerId;
+    private final String workerFullName;
+    private final WorkerStatus workerStatus;
+
+    public RfidCardSnapshot(String uid, Long workerId, String workerFullName, WorkerStatus workerStatus) {
+        if (uid == null || uid.isBlank()) {
+            throw new IllegalArgumentException("RFID UID cannot be empty");
+        }
+        this.uid = uid;
+        this.workerId = workerId;
+        this.workerFullName = workerFullName;
+        this.workerStatus = workerStatus;
+    }
+
+    public static RfidCardSnapshot unassigned(String uid) {
+        return new RfidCardSnapshot(uid, null, null, null);
+    }
+
+    public boolean isAssigned() {
+        return workerId != null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.iot.attendance.infrastructure.config;
 
+import com.iot.attendance.application.service.impl.RfidCardCache;
 import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
 import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +19,7 @@ import java.util.List;
 public class RfidInitializerService {
 
     private final RfidCardRepository rfidCardRepository;
+    private final RfidCardCache rfidCardCache;
     private static final List<String> SYSTEM_RFID_UIDS = Arrays.asList(
             "3513B5B1",
             "85DB6DB1",
@@ -45,6 +47,8 @@ public class RfidInitializerService {
                         .build();
 
                 rfidCardRepository.save(card);
+                // Un marcaje previo pudo dejarla en caché como no registrada
+                rfidCardCache.invalidate(uid);
                 log.info("✓ Tarjeta RFID creada: {}", uid);
                 created++;
             } else {
@@ -0,0 +1,304 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.infrastructure.exception.FirebaseException;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Bus de comandos hacia el ESP32. Todos los comandos comparten el canal /admin (id_target, comando, estado),
+ * así que se ejecutan de a uno: el siguiente se escribe recién cuando el dispositivo confirmó el anterior
+ * (o venció su timeout). Así dos llamadas concurrentes ya no se pisan /admin/comando.
+ * <p>
+ * Encolar no bloquea: cada comando retorna un CompletableFuture con su resultado y las confirmaciones llegan
+ * por FirebaseAdminStateWatcher. Una lista de borrados se encola completa y se ejecuta en una sola sesión,
+ * sin huecos entre la confirmación de uno y el envío del siguiente. Se guarda un historial de los últimos comandos.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceCommandBus {
+
+    public enum CommandStatus {
+        QUEUED, SENT, ACKNOWLEDGED, FAILED, TIMED_OUT
+    }
+
+    @Value("${firebase.admin.commands.delete-timeout-seconds:10}")
+    private int deleteTimeoutSeconds;
+
+    @Value("${firebase.admin.commands.format-timeout-seconds:60}")
+    private int formatTimeoutSeconds;
+
+    @Value("${firebase.admin.commands.history-size:100}")
+    private int historySize;
+
+    private final FirebaseRealtimeService firebaseService;
+    private final FirebaseAdminStateWatcher stateWatcher;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Deque<TrackedCommand> history = new ArrayDeque<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "device-command-bus");
+        t.setDaemon(true);
+        return t;
+    });
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<CommandResult> deleteFingerprint(int fingerprintId) {
+        // Solo un resultado de borrado confirma: LISTO también es el reposo de cualquier otro comando.
+        // estado se escribe antes que comando, así el resultado del borrado anterior queda pisado antes
+        // de que el dispositivo pueda responder a este
+        return enqueue(new TrackedCommand("BORRAR", fingerprintId, Duration.ofSeconds(deleteTimeoutSeconds),
+                state -> state.contains("BORRADO EXITOSO") || state.contains("BORRADO_EXITOSO") || isError(state),
+                () -> {
+                    firebaseService.setTargetFingerprintId(fingerprintId);
+                    firebaseService.setAdminState("BORRANDO_USUARIO");
+                    firebaseService.setAdminCommand("BORRAR");
+                },
+                // id_target se limpia siempre, también tras un error o timeout
+                firebaseService::clearTargetFingerprintId));
+    }
+
+    // Encola todos los borrados de una vez: corren seguidos, en el orden dado
+    public CompletableFuture<List<CommandResult>> deleteFingerprints(List<Integer> fingerprintIds) {
+        List<CompletableFuture<CommandResult>> results = fingerprintIds.stream().map(this::deleteFingerprint).toList();
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(done -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Activa el modo registro y resuelve al ID asignado ("REGISTRO EXITO ID X"). Falla con FirebaseException
+     * si el hardware reporta un fallo o si el usuario no pone el dedo dentro del timeout.
+     * onSent se ejecuta cuando el comando sale de la cola y se escribe en /admin.
+     */
+    public CompletableFuture<Integer> register(Duration timeout, Runnable onSent) {
+        return enqueue(new TrackedCommand("REGISTRAR", null, timeout,
+                state -> state.startsWith("REGISTRO EXITO ID") || state.contains("FALLO") || state.contains("TIMEOUT"),
+                () -> {
+                    onSent.run();
+                    firebaseService.startRegistrationMode();
+                }, null))
+                .thenApply(result -> {
+                    if (result.getStatus() == CommandStatus.TIMED_OUT) {
+                        throw new FirebaseException("Tiempo de espera agotado. El usuario no puso el dedo a tiempo.");
+                    }
+                    if (result.getStatus() != CommandStatus.ACKNOWLEDGED || !result.getDeviceState().startsWith("REGISTRO EXITO ID")) {
+                        throw new FirebaseException(result.getDeviceState() != null
+                                ? "El registro falló en el hardware: " + result.getDeviceState()
+                                : "No se pudo activar el modo registro: " + result.getError());
+                    }
+                    return Integer.parseInt(result.getDeviceState().replace("REGISTRO EXITO ID ", "").trim());
+                });
+    }
+
+    public CompletableFuture<CommandResult> format() {
+        // Como en el borrado: solo un resultado de formateo ("FORMATEO EXITOSO") o un error confirma, nunca un LISTO
+        // o el EXITO de otro comando; estado se escribe antes que comando para no pisar una respuesta rápida
+        return enqueue(new TrackedCommand("FORMATEAR", null, Duration.ofSeconds(formatTimeoutSeconds),
+                state -> (state.contains("FORMATE") && state.contains("EXITO")) || isError(state),
+                () -> {
+                    firebaseService.setAdminState("FORMATEANDO");
+                    firebaseService.setAdminCommand("FORMATEAR");
+                }, null));
+    }
+
+    // Deja el dispositivo en reposo; no espera confirmación
+    public CompletableFuture<CommandResult> reset() {
+        return enqueue(new TrackedCommand("NADA", null, null, null,
+                () -> {
+                    firebaseService.setAdminCommand("NADA");
+                    firebaseService.setAdminState("LISTO");
+                }, null));
+    }
+
+    public synchronized List<CommandResult> getHistory() {
+        List<CommandResult> results = new ArrayList<>(history.size());
+        history.descendingIterator().forEachRemaining(command -> results.add(command.toResult()));
+        return results;
+    }
+
+    public synchronized long getPendingCount() {
+        return history.stream().filter(command -> command.status == CommandStatus.QUEUED || command.status == CommandStatus.SENT).count();
+    }
+
+    private synchronized CompletableFuture<CommandResult> enqueue(TrackedCommand command) {
+        history.addLast(command);
+        while (history.size() > historySize && !isPending(history.peekFirst())) {
+            history.removeFirst();
+        }
+
+        // Cada comando espera al anterior, termine como termine; las escrituras corren en el hilo del bus
+        CompletableFuture<CommandResult> result = tail
+                .handle((previous, error) -> null)
+                .thenComposeAsync(ignored -> execute(command), executor);
+        tail = result;
+        log.info(">> Comando {} #{} encolado{}", command.name, command.id,
+                command.targetId != null ? " (huella ID " + command.targetId + ")" : "");
+        return result;
+    }
+
+    private CompletableFuture<CommandResult> execute(TrackedCommand command) {
+        // La espera se registra antes de escribir, para no perder una confirmación inmediata
+        CompletableFuture<String> ack = command.ackMatcher != null
+                ? stateWatcher.awaitState(command.ackMatcher, command.timeout)
+                : CompletableFuture.completedFuture(null);
+        try {
+            command.markSent();
+            command.writes.run();
+        } catch (RuntimeException e) {
+            // Una escritura en /admin que no llegó: el dispositivo no verá el comando, se falla sin esperar
+            ack.cancel(false);
+            return CompletableFuture.completedFuture(complete(command, CommandStatus.FAILED, null, e.getMessage()));
+        }
+
+        return ack.handleAsync((state, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                String late = lateAcknowledgement(command);
+                if (late != null) {
+                    log.info(">> Comando {} #{} confirmado al vencer su timeout: {}", command.name, command.id, late);
+                    return isError(late)
+                            ? complete(command, CommandStatus.FAILED, late, "El dispositivo reportó: " + late)
+                            : complete(command, CommandStatus.ACKNOWLEDGED, late, null);
+                }
+                return complete(command, CommandStatus.TIMED_OUT, null, "Sin confirmación del dispositivo en " + command.timeout.toSeconds() + "s");
+            }
+            if (cause != null) {
+                return complete(command, CommandStatus.FAILED, null, cause.getMessage());
+            }
+            if (state != null && isError(state)) {
+                return complete(command, CommandStatus.FAILED, state, "El dispositivo reportó: " + state);
+            }
+            return complete(command, CommandStatus.ACKNOWLEDGED, state, null);
+        }, executor);
+    }
+
+    // Última lectura del espejo antes de dar el comando por vencido. Corre en el hilo del bus, antes de la limpieza
+    // y de las escrituras del siguiente comando: un estado que cumple el matcher con el mismo id_target solo puede
+    // ser la respuesta de este comando, aunque haya llegado justo después del timeout
+    private String lateAcknowledgement(TrackedCommand command) {
+        FirebaseAdminStateWatcher.AdminSnapshot admin = stateWatcher.getSnapshot();
+        if (admin.isStale() || admin.getEstado() == null) {
+            return null;
+        }
+        if (command.targetId != null && !command.targetId.equals(admin.getIdTarget())) {
+            return null;
+        }
+        return command.ackMatcher.test(admin.getEstado()) ? admin.getEstado() : null;
+    }
+
+    private CommandResult complete(TrackedCommand command, CommandStatus status, String deviceState, String error) {
+        if (command.cleanup != null) {
+            try {
+                command.cleanup.run();
+            } catch (RuntimeException e) {
+                log.error("Error limpiando tras comando {} #{}: {}", command.name, command.id, e.getMessage());
+            }
+        }
+        command.finish(status, deviceState, error);
+        if (status == CommandStatus.ACKNOWLEDGED) {
+            log.info("✓ Comando {} #{} confirmado{}", command.name, command.id, deviceState != null ? ": " + deviceState : "");
+        } else {
+            log.warn("⚠ Comando {} #{} {}: {}", command.name, command.id, status, error);
+        }
+        return command.toResult();
+    }
+
+    private boolean isError(String state) {
+        return state.contains("ERROR") || state.contains("FALLO");
+    }
+
+    private boolean isPending(TrackedCommand command) {
+        return command.status == CommandStatus.QUEUED || command.status == CommandStatus.SENT;
+    }
+
+    private class TrackedCommand {
+
+        private final long id = sequence.incrementAndGet();
+        private final String name;
+        private final Integer targetId;
+        private final Duration timeout;
+        private final Predicate<String> ackMatcher;
+        private final Runnable writes;
+        private final Runnable cleanup;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        private volatile CommandStatus status = CommandStatus.QUEUED;
+        private volatile LocalDateTime sentAt;
+        private volatile LocalDateTime completedAt;
+        private volatile String deviceState;
+        private volatile String error;
+
+        TrackedCommand(String name, Integer targetId, Duration timeout, Predicate<String> ackMatcher,
+                       Runnable writes, Runnable cleanup) {
+            this.name = name;
+            this.targetId = targetId;
+            this.timeout = timeout;
+            this.ackMatcher = ackMatcher;
+            this.writes = writes;
+            this.cleanup = cleanup;
+        }
+
+        void markSent() {
+            sentAt = LocalDateTime.now();
+            status = CommandStatus.SENT;
+        }
+
+        void finish(CommandStatus status, String deviceState, String error) {
+            this.deviceState = deviceState;
+            this.error = error;
+            this.completedAt = LocalDateTime.now();
+            this.status = status;
+        }
+
+        CommandResult toResult() {
+            return CommandResult.builder()
+                    .id(id)
+                    .command(name)
+                    .targetId(targetId)
+                    .status(status)
+                    .deviceState(deviceState)
+                    .error(error)
+                    .queuedAt(queuedAt)
+                    .sentAt(sentAt)
+                    .completedAt(completedAt)
+                    .build();
+        }
+    }
+
+    @Getter
+    @Builder
+    public static class CommandResult {
+        private final long id;
+        private final String command;
+        private final Integer targetId;
+        private final CommandStatus status;
+        private final String deviceState;
+        private final String error;
+        private final LocalDateTime queuedAt;
+        private final LocalDateTime sentAt;
+        private final LocalDateTime completedAt;
+    }
+}
@@ -0,0 +1,15 @@
+package com.iot.attendance.infrastructure.firebase;
+
+// Mensaje de dispositivo ya decodificado por DeviceMessageParser
+public sealed interface DeviceEvent {
+
+    record RfidScan(String uid) implements DeviceEvent {
+    }
+
+    record DoorOpened(int fingerprintId) implements DeviceEvent {
+    }
+
+    record AccessDenied() implements DeviceEvent {
+        static final AccessDenied INSTANCE = new AccessDenied();
+    }
+}
@@ -0,0 +1,98 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Decodifica los mensajes de texto que publican los ESP32 en una sola pasada y sin expresiones regulares.
+ * Reconoce los mismos formatos que los patrones históricos:
+ * <ul>
+ *   <li>asistencia: "Marcaje RFID: XX XX XX XX" (hex en mayúsculas, los espacios se descartan)</li>
+ *   <li>accesos: "Puerta abierta ID: N"</li>
+ *   <li>seguridad: "Intento fallido huella" o "Huella desconocida"</li>
+ * </ul>
+ * El único objeto reservado por mensaje es el propio evento (y el UID en el caso RFID).
+ * Mensajes no reconocidos retornan null.
+ */
+@Component
+public class DeviceMessageParser {
+
+    private static final String RFID_PREFIX = "Marcaje RFID: ";
+    private static final String DOOR_OPENED_PREFIX = "Puerta abierta ID: ";
+    private static final String FAILED_FINGERPRINT = "Intento fallido huella";
+    private static final String UNKNOWN_FINGERPRINT = "Huella desconocida";
+
+    public DeviceEvent parse(FirebaseLogNode node, String message) {
+        if (message == null) return null;
+        return switch (node) {
+            case ASISTENCIA -> parseRfidScan(message);
+            case ACCESOS -> parseDoorOpened(message);
+            case SEGURIDAD -> parseAccessDenied(message);
+        };
+    }
+
+    private DeviceEvent.RfidScan parseRfidScan(String message) {
+        int from = 0;
+        int start;
+        while ((start = message.indexOf(RFID_PREFIX, from)) >= 0) {
+            start += RFID_PREFIX.length();
+            int end = start;
+            int hexDigits = 0;
+            while (end < message.length()) {
+                char c = message.charAt(end);
+                if (isUpperHex(c)) {
+                    hexDigits++;
+                } else if (c != ' ') {
+                    break;
+                }
+                end++;
+            }
+            if (hexDigits > 0) return new DeviceEvent.RfidScan(compactUid(message, start, end, hexDigits));
+            from = start;
+        }
+        return null;
+    }
+
+    // El UID se guarda sin espacios: "A1 B2 C3 D4" -> "A1B2C3D4"
+    private String compactUid(String message, int start, int end, int hexDigits) {
+        if (hexDigits == end - start) return message.substring(start, end);
+
+        char[] uid = new char[hexDigits];
+        int i = 0;
+        for (int p = start; p < end; p++) {
+            char c = message.charAt(p);
+            if (c != ' ') uid[i++] = c;
+        }
+        return new String(uid);
+    }
+
+    private DeviceEvent.DoorOpened parseDoorOpened(String message) {
+        int from = 0;
+        int start;
+        while ((start = message.indexOf(DOOR_OPENED_PREFIX, from)) >= 0) {
+            start += DOOR_OPENED_PREFIX.length();
+            int value = 0;
+            int p = start;
+            while (p < message.length()) {
+                char c = message.charAt(p);
+                if (c < '0' || c > '9') break;
+                // Un ID fuera de rango no corresponde a ningún slot del sensor
+                if (value > (Integer.MAX_VALUE - (c - '0')) / 10) return null;
+                value = value * 10 + (c - '0');
+                p++;
+            }
+            if (p > start) return new DeviceEvent.DoorOpened(value);
+            from = start;
+        }
+        return null;
+    }
+
+    private DeviceEvent.AccessDenied parseAccessDenied(String message) {
+        return message.contains(FAILED_FINGERPRINT) || message.contains(UNKNOWN_FINGERPRINT)
+                ? DeviceEvent.AccessDenied.INSTANCE
+                : null;
+    }
+
+    private static boolean isUpperHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F');
+    }
+}
@@ -0,0 +1,294 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Mantiene un único stream SSE sobre /admin y con él un espejo en memoria del nodo (comando, estado, id_target,
+ * ultimo_id_creado). Las lecturas de /admin salen del espejo, sin ir a Firebase; getSnapshot indica si el espejo
+ * está sincronizado o desde cuándo no lo está.
+ * <p>
+ * Además completa las esperas registradas en cuanto el ESP32 publica un estado que les interesa
+ * (p. ej. "REGISTRO EXITO ID 7" o "BORRADO EXITOSO"). Las esperas no ocupan hilos: son CompletableFuture con
+ * orTimeout, y solo ven estados publicados después de registrarse, de modo que un estado viejo no las completa.
+ * Se les avisa únicamente cuando el valor de estado cambia: el nodo completo que Firebase reenvía al reconectar
+ * no repite un estado ya visto.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseAdminStateWatcher {
+
+    private static final String ADMIN_PATH = "admin";
+    private static final String STATE_KEY = "estado";
+
+    @Value("${firebase.admin.watch.reconnect-initial-delay-ms:1000}")
+    private long reconnectInitialDelayMs;
+
+    @Value("${firebase.admin.watch.reconnect-max-delay-ms:30000}")
+    private long reconnectMaxDelayMs;
+
+    @Value("${firebase.admin.watch.idle-timeout-ms:75000}")
+    private long idleTimeoutMs;
+
+    private final FirebaseRestClient restClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<StateWaiter> waiters = new CopyOnWriteArrayList<>();
+    // Solo lo modifica el hilo del stream; las lecturas toman una copia bajo el mismo monitor
+    private final ObjectNode mirror = objectMapper.createObjectNode();
+    private volatile boolean synced;
+    private volatile boolean initialized;
+    private volatile InputStream body;
+    private volatile long lastActivity = System.currentTimeMillis();
+    private volatile boolean running;
+    private Thread thread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "firebase-admin-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        close();
+        if (thread != null) thread.interrupt();
+        waiters.forEach(waiter -> waiter.future().cancel(false));
+    }
+
+    /**
+     * Espera el primer estado publicado desde ahora que cumpla matcher. El futuro falla con
+     * TimeoutException si no llega dentro de timeout.
+     */
+    public CompletableFuture<String> awaitState(Predicate<String> matcher, Duration timeout) {
+        StateWaiter waiter = new StateWaiter(matcher, new CompletableFuture<>());
+        waiters.add(waiter);
+        return waiter.future()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((state, error) -> waiters.remove(waiter));
+    }
+
+    public Optional<String> getCurrentState() {
+        return Optional.ofNullable(getSnapshot().getEstado());
+    }
+
+    /**
+     * Copia del espejo de /admin. stale es true si el stream está caído o aún no recibió el valor inicial;
+     * en ese caso ageMs es el tiempo desde la última actividad del stream.
+     */
+    public AdminSnapshot getSnapshot() {
+        boolean stale = !synced || !isConnected();
+        long lastSeen = lastActivity;
+        synchronized (mirror) {
+            return AdminSnapshot.builder()
+                    .comando(text(mirror.get("comando")))
+                    .estado(text(mirror.get(STATE_KEY)))
+                    .idTarget(number(mirror.get("id_target")))
+                    .ultimoIdCreado(number(mirror.get("ultimo_id_creado")))
+                    .stale(stale)
+                    .ageMs(stale ? System.currentTimeMillis() - lastSeen : 0)
+                    .lastStreamActivity(initialized ? LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSeen), ZoneId.systemDefault()) : null)
+                    .build();
+        }
+    }
+
+    // true una vez recibido el primer valor completo de /admin; el espejo conserva lo último visto aunque el stream caiga
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public boolean isConnected() {
+        return body != null;
+    }
+
+    public int getPendingWaiters() {
+        return waiters.size();
+    }
+
+    // Firebase envía keep-alive cada ~30s; sin actividad se fuerza la reconexión
+    @Scheduled(fixedDelay = 15000)
+    public void checkIdleConnection() {
+        if (isConnected() && System.currentTimeMillis() - lastActivity > idleTimeoutMs) {
+            log.warn("⚠ Stream de /{} sin actividad por {} ms, reconectando", ADMIN_PATH, idleTimeoutMs);
+            close();
+        }
+    }
+
+    private void run() {
+        long delay = reconnectInitialDelayMs;
+        while (running) {
+            try {
+                connect();
+                delay = reconnectInitialDelayMs;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (running) log.error("Error en stream de /{}: {}", ADMIN_PATH, e.getMessage());
+            } finally {
+                close();
+            }
+
+            if (!running) return;
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delay = Math.min(delay * 2, reconnectMaxDelayMs);
+        }
+    }
+
+    private void connect() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = restClient.openStream(ADMIN_PATH, ADMIN_PATH, null);
+        body = response.body();
+        lastActivity = System.currentTimeMillis();
+        log.info("✓ Observando /{} por stream", ADMIN_PATH);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String event = null;
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                lastActivity = System.currentTimeMillis();
+                if (line.startsWith("event:")) {
+                    event = line.substring(6).trim();
+                } else if (line.startsWith("data:") && event != null) {
+                    if ("put".equals(event) || "patch".equals(event)) {
+                        JsonNode payload = objectMapper.readTree(line.substring(5).trim());
+                        apply(event, payload.path("path").asText("/"), payload.path("data"));
+                    } else if ("cancel".equals(event) || "auth_revoked".equals(event)) {
+                        log.warn("⚠ Stream de /{} cerrado por servidor: {}", ADMIN_PATH, event);
+                        return;
+                    }
+                    event = null;
+                }
+            }
+        }
+    }
+
+    // Al (re)conectar Firebase envía el nodo completo como primer put (path "/"): cubre lo que cambió durante un corte
+    private void apply(String event, String path, JsonNode data) {
+        String[] segments = path.replaceAll("^/+|/+$", "").split("/");
+        boolean root = segments.length == 1 && segments[0].isEmpty();
+        String previous;
+        String state;
+        synchronized (mirror) {
+            previous = text(mirror.get(STATE_KEY));
+            if (root) {
+                if ("put".equals(event)) mirror.removeAll();
+                if (data.isObject()) data.fields().forEachRemaining(field -> setChild(mirror, field.getKey(), field.getValue()));
+            } else {
+                ObjectNode parent = mirror;
+                for (int i = 0; i < segments.length - 1; i++) {
+                    JsonNode child = parent.get(segments[i]);
+                    parent = child instanceof ObjectNode object ? object : parent.putObject(segments[i]);
+                }
+                String key = segments[segments.length - 1];
+                if ("put".equals(event) || !data.isObject()) {
+                    setChild(parent, key, data);
+                } else {
+                    JsonNode child = parent.get(key);
+                    ObjectNode target = child instanceof ObjectNode object ? object : parent.putObject(key);
+                    data.fields().forEachRemaining(field -> setChild(target, field.getKey(), field.getValue()));
+                }
+            }
+            state = text(mirror.get(STATE_KEY));
+        }
+        if (root && "put".equals(event)) {
+            synced = true;
+            initialized = true;
+        }
+        if (!Objects.equals(previous, state)) onState(state != null ? state : "");
+    }
+
+    private void setChild(ObjectNode parent, String key, JsonNode value) {
+        if (value == null || value.isNull()) parent.remove(key);
+        else parent.set(key, value);
+    }
+
+    private void onState(String state) {
+        log.info(">> Estado ESP32: {}", state);
+        for (StateWaiter waiter : waiters) {
+            try {
+                if (waiter.matcher().test(state)) waiter.future().complete(state);
+            } catch (RuntimeException e) {
+                waiter.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void close() {
+        InputStream current = body;
+        body = null;
+        synced = false;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    private static Integer number(JsonNode node) {
+        if (node == null || node.isNull()) return null;
+        if (node.canConvertToInt()) return node.asInt();
+        try {
+            return Integer.parseInt(node.asText().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record StateWaiter(Predicate<String> matcher, CompletableFuture<String> future) {
+    }
+
+    @Getter
+    @Builder
+    public static class AdminSnapshot {
+        private final String comando;
+        private final String estado;
+        private final Integer idTarget;
+        private final Integer ultimoIdCreado;
+        private final boolean stale;
+        private final long ageMs;
+        private final LocalDateTime lastStreamActivity;
+    }
+}
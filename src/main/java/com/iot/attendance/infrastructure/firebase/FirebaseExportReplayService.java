@@ -0,0 +1,332 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.iot.attendance.application.service.IngestionDeadLetterService;
+import com.iot.attendance.application.service.impl.IngestionBatchProcessor;
+import com.iot.attendance.infrastructure.exception.BusinessException;
+import com.iot.attendance.infrastructure.persistence.entity.IngestionCursorEntity;
+import com.iot.attendance.infrastructure.persistence.repository.IngestionCursorRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconstruye asistencias y logs de acceso a partir de un export JSON de Firebase (p. ej. tras un incidente).
+ * El archivo se recorre con el JsonParser de streaming, sin cargarlo en memoria, y cada nodo /logs/* de cada
+ * sede se entrega en lotes a IngestionBatchProcessor, el mismo camino que la ingesta en vivo. La hora de cada
+ * evento se toma de su push key, no del momento del replay.
+ * <p>
+ * El avance se guarda en ingestion_cursors bajo "replay/&lt;nombre&gt;/&lt;ruta&gt;": un replay interrumpido con el
+ * mismo nombre retoma desde la última clave confirmada. Se asume el export ordenado por clave, como lo
+ * genera Firebase. El replay no toca los cursores de la ingesta en vivo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseExportReplayService {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, STOPPED, FAILED
+    }
+
+    @Value("${firebase.ingestion.replay.batch-size:1000}")
+    private int batchSize;
+
+    private final IngestionBatchProcessor batchProcessor;
+    private final IngestionDeadLetterService deadLetterService;
+    private final IngestionCursorRepository cursorRepository;
+    private final IngestionPartitions partitions;
+    private final DeviceMessageParser messageParser;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "firebase-export-replay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Progress current;
+
+    @PreDestroy
+    public void shutdown() {
+        Progress progress = current;
+        if (progress != null) progress.stopRequested = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Inicia el replay en segundo plano. root es la ruta de Firebase desde la que se hizo el export
+     * (vacío si es la base completa); from/to acotan la ventana a reconstruir.
+     */
+    public synchronized ReplayStatus start(Path file, String name, String root, LocalDateTime from, LocalDateTime to,
+                                           boolean restart) {
+        if (current != null && current.state == State.RUNNING) {
+            throw new BusinessException("A replay is already running: " + current.name);
+        }
+        if (!Files.isRegularFile(file)) {
+            throw new BusinessException("Export file not found: " + file);
+        }
+
+        String replayName = sanitize(name != null && !name.isBlank() ? name : file.getFileName().toString());
+        if (restart) {
+            partitions.getPartitions().forEach(partition -> cursorRepository.deleteById(checkpointId(replayName, partition)));
+        }
+
+        Progress progress = new Progress(replayName, file, normalizeRoot(root),
+                from != null ? PushKeys.prefix(toEpochMilli(from)) : null,
+                to != null ? PushKeys.prefix(toEpochMilli(to)) : null);
+        current = progress;
+        executor.submit(() -> run(progress));
+        return getStatus();
+    }
+
+    // El replay termina el lote en curso y guarda su posición; se retoma llamando a start con el mismo nombre
+    public ReplayStatus stop() {
+        Progress progress = current;
+        if (progress == null || progress.state != State.RUNNING) {
+            throw new BusinessException("No replay is running");
+        }
+        progress.stopRequested = true;
+        return getStatus();
+    }
+
+    public ReplayStatus getStatus() {
+        Progress progress = current;
+        if (progress == null) return ReplayStatus.builder().state(State.IDLE).build();
+
+        long end = progress.finishedAt != null ? progress.finishedNanos : System.nanoTime();
+        double seconds = Math.max((end - progress.startedNanos) / 1e9, 0.001);
+        return ReplayStatus.builder()
+                .name(progress.name)
+                .file(progress.file.toString())
+                .state(progress.state)
+                .eventsRead(progress.eventsRead.get())
+                .eventsProcessed(progress.eventsProcessed.get())
+                .eventsSkipped(progress.eventsSkipped.get())
+                .deadLettered(progress.deadLettered.get())
+                .bytesRead(progress.bytesRead)
+                .fileSize(progress.fileSize)
+                .eventsPerSecond(Math.round(progress.eventsProcessed.get() / seconds))
+                .checkpoints(new LinkedHashMap<>(progress.checkpoints))
+                .startedAt(progress.startedAt)
+                .finishedAt(progress.finishedAt)
+                .error(progress.error)
+                .build();
+    }
+
+    private void run(Progress progress) {
+        log.info(">> Replay '{}' iniciado desde {} ({} MB)", progress.name, progress.file, progress.fileSize / (1024 * 1024));
+        try (JsonParser parser = jsonFactory.createParser(progress.file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("El export no es un objeto JSON");
+            }
+            walk(parser, progress.root, progress);
+            progress.finish(progress.stopRequested ? State.STOPPED : State.COMPLETED, null);
+        } catch (Exception e) {
+            log.error("Error en replay '{}': {}", progress.name, e.getMessage());
+            progress.finish(State.FAILED, e.getMessage());
+        }
+
+        ReplayStatus status = getStatus();
+        log.info("✓ Replay '{}' {}: {} eventos procesados, {} omitidos, {} eventos/s", status.getName(),
+                status.getState(), status.getEventsProcessed(), status.getEventsSkipped(), status.getEventsPerSecond());
+    }
+
+    // El parser está sobre un START_OBJECT; solo se desciende por ramas que llevan a un nodo de logs
+    private void walk(JsonParser parser, String path, Progress progress) throws IOException {
+        while (!progress.stopRequested && parser.nextToken() == JsonToken.FIELD_NAME) {
+            String childPath = path.isEmpty() ? parser.currentName() : path + "/" + parser.currentName();
+            JsonToken token = parser.nextToken();
+
+            LogPartition partition = progress.partitionsByPath.get(childPath);
+            if (token == JsonToken.START_OBJECT && partition != null) {
+                replayNode(parser, partition, progress);
+            } else if (token == JsonToken.START_OBJECT && progress.leadsToPartition(childPath)) {
+                walk(parser, childPath, progress);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void replayNode(JsonParser parser, LogPartition partition, Progress progress) throws IOException {
+        String checkpointId = checkpointId(progress.name, partition);
+        String checkpoint = cursorRepository.findById(checkpointId).map(IngestionCursorEntity::getLastKey).orElse(null);
+        if (checkpoint != null) {
+            progress.checkpoints.put(partition.getId(), checkpoint);
+            log.info(">> Replay '{}': /{} se retoma desde {}", progress.name, partition.path(), checkpoint);
+        }
+
+        List<IngestionEvent> batch = new ArrayList<>(batchSize);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            JsonToken token = parser.nextToken();
+            progress.eventsRead.incrementAndGet();
+
+            if (token != JsonToken.VALUE_STRING || !progress.inWindow(key, checkpoint)) {
+                parser.skipChildren();
+                progress.eventsSkipped.incrementAndGet();
+                continue;
+            }
+            long timestamp = PushKeys.timestamp(key);
+            if (timestamp < 0) {
+                progress.eventsSkipped.incrementAndGet();
+                continue;
+            }
+
+            String message = parser.getText();
+            batch.add(new IngestionEvent(partition, key, message, messageParser.parse(partition.node(), message),
+                    PushKeys.toDateTime(timestamp)));
+            if (batch.size() >= batchSize) {
+                flush(batch, checkpointId, partition, progress);
+                progress.bytesRead = parser.currentLocation().getByteOffset();
+                if (progress.stopRequested) {
+                    // Se deja el parser a mitad del nodo: el cierre del archivo descarta el resto
+                    return;
+                }
+            }
+        }
+        flush(batch, checkpointId, partition, progress);
+        progress.bytesRead = parser.currentLocation().getByteOffset();
+    }
+
+    private void flush(List<IngestionEvent> batch, String checkpointId, LogPartition partition, Progress progress) {
+        if (batch.isEmpty()) return;
+
+        try {
+            batchProcessor.processBatch(batch);
+        } catch (Exception e) {
+            // Igual que en vivo: se aísla el evento problemático y va a dead-letter
+            log.warn("⚠ Lote de replay de {} eventos falló, procesando uno por uno: {}", batch.size(), e.getMessage());
+            for (IngestionEvent event : batch) {
+                try {
+                    batchProcessor.processBatch(List.of(event));
+                } catch (Exception single) {
+                    deadLetterService.record(event, single);
+                    progress.deadLettered.incrementAndGet();
+                }
+            }
+        }
+
+        String lastKey = batch.get(batch.size() - 1).key();
+        cursorRepository.advance(checkpointId, lastKey);
+        progress.checkpoints.put(partition.getId(), lastKey);
+        progress.eventsProcessed.addAndGet(batch.size());
+        batch.clear();
+    }
+
+    private String checkpointId(String name, LogPartition partition) {
+        return "replay/" + name + "/" + partition.path();
+    }
+
+    private String sanitize(String name) {
+        String cleaned = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return cleaned.length() > 40 ? cleaned.substring(0, 40) : cleaned;
+    }
+
+    private String normalizeRoot(String root) {
+        if (root == null) return "";
+        String trimmed = root.trim();
+        while (trimmed.startsWith("/")) trimmed = trimmed.substring(1);
+        while (trimmed.endsWith("/")) trimmed = trimmed.substring(0, trimmed.length() - 1);
+        return trimmed;
+    }
+
+    private long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private class Progress {
+
+        private final String name;
+        private final Path file;
+        private final String root;
+        private final String fromKey;
+        private final String toKey;
+        private final long fileSize;
+        private final Map<String, LogPartition> partitionsByPath = new HashMap<>();
+        private final Map<String, String> checkpoints = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final AtomicLong eventsRead = new AtomicLong();
+        private final AtomicLong eventsProcessed = new AtomicLong();
+        private final AtomicLong eventsSkipped = new AtomicLong();
+        private final AtomicLong deadLettered = new AtomicLong();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+
+        private volatile State state = State.RUNNING;
+        private volatile boolean stopRequested;
+        private volatile long bytesRead;
+        private volatile LocalDateTime finishedAt;
+        private volatile long finishedNanos;
+        private volatile String error;
+
+        Progress(String name, Path file, String root, String fromKey, String toKey) {
+            this.name = name;
+            this.file = file;
+            this.root = root;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                size = -1;
+            }
+            this.fileSize = size;
+            partitions.getPartitions().forEach(partition -> partitionsByPath.put(partition.path(), partition));
+        }
+
+        boolean leadsToPartition(String path) {
+            String prefix = path + "/";
+            return partitionsByPath.keySet().stream().anyMatch(p -> p.startsWith(prefix));
+        }
+
+        boolean inWindow(String key, String checkpoint) {
+            if (checkpoint != null && key.compareTo(checkpoint) <= 0) return false;
+            if (fromKey != null && key.compareTo(fromKey) < 0) return false;
+            return toKey == null || key.compareTo(toKey) < 0;
+        }
+
+        void finish(State finalState, String failure) {
+            finishedNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+            error = failure;
+            state = finalState;
+        }
+    }
+
+    @Getter
+    @Builder
+    public static class ReplayStatus {
+        private final String name;
+        private final String file;
+        private final State state;
+        private final long eventsRead;
+        private final long eventsProcessed;
+        private final long eventsSkipped;
+        private final long deadLettered;
+        private final long bytesRead;
+        private final long fileSize;
+        private final long eventsPerSecond;
+        private final Map<String, String> checkpoints;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final String error;
+    }
+}
@@ -0,0 +1,167 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseLogCatchUpService {
+
+    @Value("${firebase.ingestion.catch-up.page-size:500}")
+    private int pageSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final FirebaseLogEventHandler eventHandler;
+    private final IngestionCursorService cursorService;
+    private final IngestionJournal journal;
+    private final FirebaseRestClient restClient;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Procesa todo lo pendiente desde el cursor persistido, paginando con startAt hasta alcanzar el final del nodo.
+     * Si el nodo nunca fue ingerido, se toma solo la ventana reciente (limitToLast=5) para sembrar el cursor.
+     * Ante un error se detiene sin avanzar el cursor, de modo que el evento se reintenta en la siguiente pasada.
+     */
+    public int drain(LogPartition partition) throws IOException {
+        String cursor = getResumeKey(partition).orElse(null);
+        return drainFrom(partition, cursor, join(fetchAsync(partition, firstPageQuery(cursor))));
+    }
+
+    /**
+     * Variante multiplexada: la primera página de cada partición se pide en paralelo sobre la misma conexión,
+     * de modo que un ciclo sin novedades tarda una ida y vuelta en lugar de una por nodo. Sigue siendo un GET
+     * por partición: la API REST no combina shallow con consultas, así que no hay forma de leer la cola de
+     * varios nodos en una sola petición. Solo las particiones con backlog (página llena) siguen paginando.
+     */
+    public int drainAll(Collection<LogPartition> partitions) throws IOException {
+        Map<LogPartition, String> cursors = new HashMap<>();
+        Map<LogPartition, CompletableFuture<TreeMap<String, String>>> pages = new LinkedHashMap<>();
+        for (LogPartition partition : partitions) {
+            String cursor = getResumeKey(partition).orElse(null);
+            cursors.put(partition, cursor);
+            pages.put(partition, fetchAsync(partition, firstPageQuery(cursor)));
+        }
+
+        int total = 0;
+        IOException failure = null;
+        for (LogPartition partition : pages.keySet()) {
+            try {
+                total += drainFrom(partition, cursors.get(partition), join(pages.get(partition)));
+            } catch (IOException e) {
+                // Una partición con error no bloquea a las demás
+                log.error("Error polling {}: {}", partition.getId(), e.getMessage());
+                failure = e;
+            }
+        }
+        if (failure != null && total == 0) throw failure;
+        return total;
+    }
+
+    /**
+     * Posición desde la que se sigue leyendo Firebase: el cursor confirmado en la BD o, si el journal
+     * ya tiene eventos posteriores aún sin confirmar, la última clave escrita en el journal.
+     */
+    public Optional<String> getResumeKey(LogPartition partition) {
+        Optional<String> committed = cursorService.getLastKey(partition);
+        Optional<String> journaled = journal.getJournaledKey(partition);
+        if (journaled.isEmpty()) return committed;
+        if (committed.isEmpty()) return journaled;
+        return journaled.get().compareTo(committed.get()) > 0 ? journaled : committed;
+    }
+
+    private String firstPageQuery(String cursor) {
+        return cursor != null ? pageQuery(cursor) : "orderBy=" + encode("\"$key\"") + "&limitToLast=5";
+    }
+
+    private String pageQuery(String fromKey) {
+        return "orderBy=" + encode("\"$key\"") + "&startAt=" + encode("\"" + fromKey + "\"") + "&limitToFirst=" + pageSize;
+    }
+
+    private int drainFrom(LogPartition partition, String cursor, TreeMap<String, String> firstPage) throws IOException {
+        if (cursor == null) {
+            return dispatch(partition, firstPage, null);
+        }
+
+        int total = 0;
+        String lastKey = cursor;
+        eventHandler.resumeFrom(partition, lastKey);
+        TreeMap<String, String> page = firstPage;
+        while (true) {
+            int processed = dispatch(partition, page, lastKey);
+            total += processed;
+
+            if (page.size() < pageSize || processed == 0) break;
+            lastKey = page.lastKey();
+            page = join(fetchAsync(partition, pageQuery(lastKey)));
+        }
+
+        if (total > 0) log.info("✓ {} eventos pendientes procesados en /{}", total, partition.path());
+        return total;
+    }
+
+    private int dispatch(LogPartition partition, TreeMap<String, String> page, String exclusiveFrom) {
+        int processed = 0;
+        for (Map.Entry<String, String> entry : page.entrySet()) {
+            // startAt es inclusivo: la clave del cursor ya fue procesada
+            if (entry.getKey().equals(exclusiveFrom)) continue;
+            eventHandler.handle(partition, entry.getKey(), entry.getValue());
+            processed++;
+        }
+        if (processed > 0) eventHandler.flush();
+        return processed;
+    }
+
+    private CompletableFuture<TreeMap<String, String>> fetchAsync(LogPartition partition, String query) {
+        meterRegistry.counter("firebase.ingestion.requests", "site", partition.site(), "node", partition.node().getNodeName()).increment();
+        // El transporte es HTTP/2: las consultas concurrentes de drainAll comparten una sola conexión TLS
+        return restClient.getAsync(partition.node().getPath(), partition.path(), query)
+                .thenApply(body -> {
+                    try {
+                        return parse(body);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    // Firebase no garantiza orden en respuestas filtradas, se reordena por push key
+    private TreeMap<String, String> parse(String response) throws IOException {
+        TreeMap<String, String> entries = new TreeMap<>();
+        if (response == null || response.equals("null")) return entries;
+
+        JsonNode rootNode = objectMapper.readTree(response);
+        Iterator<Map.Entry<String, JsonNode>> fields = rootNode.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> entry = fields.next();
+            entries.put(entry.getKey(), entry.getValue().asText());
+        }
+        return entries;
+    }
+
+    private TreeMap<String, String> join(CompletableFuture<TreeMap<String, String>> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
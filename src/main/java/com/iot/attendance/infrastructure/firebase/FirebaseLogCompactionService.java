@@ -0,0 +1,160 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Poda los nodos /logs/* de cada sede en Firebase una vez que su contenido está confirmado en PostgreSQL.
+ * Solo se borran claves menores o iguales al cursor de ingesta persistido y, además, más antiguas que
+ * la retención configurada (el tiempo se lee del prefijo de la push key). El borrado se hace con PATCH
+ * multi-ruta ({"clave": null, ...}) en bloques grandes, no con una petición por clave.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseLogCompactionService {
+
+    @Value("${firebase.ingestion.compaction.enabled:false}")
+    private boolean enabled;
+
+    @Value("${firebase.ingestion.compaction.retention-minutes:1440}")
+    private long retentionMinutes;
+
+    @Value("${firebase.ingestion.compaction.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${firebase.ingestion.compaction.max-chunks-per-run:50}")
+    private int maxChunksPerRun;
+
+    private final IngestionCursorService cursorService;
+    private final IngestionLeaderElection leaderElection;
+    private final IngestionPartitions partitions;
+    private final FirebaseRestClient restClient;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Scheduled(cron = "${firebase.ingestion.compaction.cron:0 30 3 * * *}")
+    public void scheduledCompaction() {
+        if (!enabled || leaderElection.getOwnedSites().isEmpty()) return;
+        try {
+            // Cada réplica compacta solo las sedes que ingiere
+            compact(leaderElection.getOwnedSites());
+        } catch (Exception e) {
+            log.error("Error compactando logs de Firebase: {}", e.getMessage());
+        }
+    }
+
+    public CompactionReport compact() throws IOException, InterruptedException {
+        return compact(partitions.getSites());
+    }
+
+    public synchronized CompactionReport compact(Collection<String> sites) throws IOException, InterruptedException {
+        long started = System.currentTimeMillis();
+        Map<String, NodeReport> nodes = new LinkedHashMap<>();
+
+        for (String site : sites) {
+            for (LogPartition partition : partitions.getPartitions(site)) {
+                Optional<String> cursor = cursorService.getLastKey(partition);
+                if (cursor.isEmpty()) continue;
+                nodes.put(partition.getId(), compactNode(partition, upperBound(cursor.get())));
+            }
+        }
+
+        CompactionReport report = CompactionReport.builder()
+                .nodes(nodes)
+                .deletedEntries(nodes.values().stream().mapToLong(NodeReport::getDeletedEntries).sum())
+                .reclaimedBytes(nodes.values().stream().mapToLong(NodeReport::getReclaimedBytes).sum())
+                .durationMs(System.currentTimeMillis() - started)
+                .build();
+        log.info("✓ Compactación de logs: {} entradas eliminadas, ~{} KB liberados en {} ms",
+                report.getDeletedEntries(), report.getReclaimedBytes() / 1024, report.getDurationMs());
+        return report;
+    }
+
+    private NodeReport compactNode(LogPartition partition, String upperBound) throws IOException, InterruptedException {
+        long deleted = 0;
+        long bytes = 0;
+
+        for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+            JsonNode entries = fetchChunk(partition, upperBound);
+            if (entries == null || entries.isEmpty()) break;
+
+            ObjectNode patch = objectMapper.createObjectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = entries.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> entry = fields.next();
+                patch.putNull(entry.getKey());
+                bytes += entry.getKey().length() + entry.getValue().toString().getBytes(StandardCharsets.UTF_8).length;
+            }
+            deletePaths(partition, patch);
+            deleted += patch.size();
+
+            if (entries.size() < chunkSize) break;
+        }
+
+        String site = partition.site();
+        String node = partition.node().getNodeName();
+        meterRegistry.counter("firebase.compaction.deleted", "site", site, "node", node).increment(deleted);
+        meterRegistry.counter("firebase.compaction.bytes", "site", site, "node", node).increment(bytes);
+        if (deleted > 0) log.info(">> /{}: {} entradas compactadas", partition.path(), deleted);
+
+        return NodeReport.builder().deletedEntries(deleted).reclaimedBytes(bytes).upperBound(upperBound).build();
+    }
+
+    private JsonNode fetchChunk(LogPartition partition, String upperBound) throws IOException {
+        String query = "orderBy=" + encode("\"$key\"") + "&endAt=" + encode("\"" + upperBound + "\"") + "&limitToFirst=" + chunkSize;
+        String response = restClient.get(partition.node().getPath() + "/compaction", partition.path(), query);
+
+        JsonNode body = objectMapper.readTree(response);
+        return body.isObject() ? body : null;
+    }
+
+    // Un PATCH con {"k1": null, "k2": null} borra todas las claves en una sola escritura atómica
+    private void deletePaths(LogPartition partition, ObjectNode patch) throws IOException {
+        restClient.patch(partition.node().getPath() + "/compaction", partition.path(), patch.toString());
+    }
+
+    /**
+     * Límite superior del borrado: el menor entre el cursor confirmado y una push key sintética que
+     * representa "ahora - retención" (los 8 primeros caracteres de una push key codifican el timestamp).
+     */
+    private String upperBound(String cursor) {
+        String retentionKey = PushKeys.prefix(System.currentTimeMillis() - retentionMinutes * 60_000);
+        return cursor.compareTo(retentionKey) < 0 ? cursor : retentionKey;
+    }
+
+    private String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Getter
+    @Builder
+    public static class CompactionReport {
+        private final Map<String, NodeReport> nodes;
+        private final long deletedEntries;
+        private final long reclaimedBytes;
+        private final long durationMs;
+    }
+
+    @Getter
+    @Builder
+    public static class NodeReport {
+        private final long deletedEntries;
+        private final long reclaimedBytes;
+        private final String upperBound;
+    }
+}
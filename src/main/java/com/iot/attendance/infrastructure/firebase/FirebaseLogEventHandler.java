@@ -0,0 +1,84 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseLogEventHandler {
+
+    private static final int PUSH_KEY_LENGTH = 20;
+
+    private final IngestionBatchPipeline batchPipeline;
+    private final ProcessedKeyDeduplicator deduplicator;
+    private final DeviceMessageParser messageParser;
+    private final IngestionJournal journal;
+    private final IngestionCursorService cursorService;
+    private final IngestionPartitions partitions;
+
+    // Antes de que arranque el polling/streaming: lo que quedó en el journal sin confirmar lo vuelven a leer
+    // los carriles, y aquí solo se marca para no aceptarlo de nuevo desde Firebase
+    @PostConstruct
+    public void recoverJournal() {
+        if (!journal.isEnabled()) return;
+
+        Map<LogPartition, String> committed = new HashMap<>();
+        for (LogPartition partition : partitions.getPartitions()) {
+            cursorService.getLastKey(partition).ifPresent(key -> committed.put(partition, key));
+        }
+        journal.recover(committed, event -> deduplicator.markProcessed(event.partition(), event.key()));
+    }
+
+    /**
+     * Punto de entrada común para polling y streaming: deduplica por push key y lo da por recibido.
+     * Con journal, recibir es solo anexarlo (los carriles lo toman tras el fsync de flush()); sin journal
+     * se decodifica y se encola directamente.
+     */
+    public void handle(LogPartition partition, String key, String message) {
+        if (deduplicator.isDuplicate(partition, key)) return;
+
+        LocalDateTime receivedAt = receivedAt(key);
+        if (journal.isEnabled()) {
+            journal.append(new IngestionEvent(partition, key, message, null, receivedAt));
+        } else {
+            DeviceEvent deviceEvent = messageParser.parse(partition.node(), message);
+            enqueue(new IngestionEvent(partition, key, message, deviceEvent, receivedAt));
+        }
+        deduplicator.markProcessed(partition, key);
+    }
+
+    // Firebase genera la push key al recibir el POST del dispositivo: su timestamp es la hora del marcaje,
+    // también para el backlog que se lee horas después desde el cursor. Solo una clave ajena usa la hora actual.
+    private LocalDateTime receivedAt(String key) {
+        long timestamp = key.length() == PUSH_KEY_LENGTH ? PushKeys.timestamp(key) : -1;
+        return timestamp >= 0 ? PushKeys.toDateTime(timestamp) : LocalDateTime.now();
+    }
+
+    // Si no se pudo encolar, la excepción corta la página o el stream y el evento se vuelve a leer desde el cursor
+    private void enqueue(IngestionEvent event) {
+        try {
+            batchPipeline.submit(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido encolando " + event.partition().getId() + " (" + event.key() + ")", e);
+        }
+    }
+
+    // Cierra un grupo de eventos recibidos (una página o un mensaje de stream) con un solo fsync del journal,
+    // que además los deja visibles para los carriles
+    public void flush() {
+        journal.sync();
+    }
+
+    // Todo lo anterior o igual al cursor persistido ya fue procesado
+    public void resumeFrom(LogPartition partition, String lastKey) {
+        deduplicator.advanceWatermark(partition, lastKey);
+    }
+}
@@ -0,0 +1,19 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum FirebaseLogNode {
+
+    ASISTENCIA("asistencia"),
+    ACCESOS("accesos"),
+    SEGURIDAD("seguridad");
+
+    private final String nodeName;
+
+    public String getPath() {
+        return "logs/" + nodeName;
+    }
+}
@@ -0,0 +1,49 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.infrastructure.persistence.entity.FirebaseOutboxEntity;
+import com.iot.attendance.infrastructure.persistence.repository.FirebaseOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Escritura en firebase_outbox. Se une a la transacción de quien llama: el efecto hacia Firebase se confirma
+ * o se descarta junto con el cambio de negocio, y la transacción solo hace trabajo de BD.
+ * FirebaseOutboxRelay se encarga de enviarlo después.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseOutbox {
+
+    private final FirebaseOutboxRepository outboxRepository;
+
+    // Nueva entrada bajo path (p. ej. logs/accesos), con push key asignada al enviar
+    @Transactional
+    public Long appendLog(String path, String value) {
+        return append(path, FirebaseOutboxEntity.OPERATION_PUSH, value);
+    }
+
+    // Borrado de la huella en el sensor, vía DeviceCommandBus
+    @Transactional
+    public Long appendFingerprintDeletion(Integer fingerprintId) {
+        Long id = append("admin", FirebaseOutboxEntity.OPERATION_DELETE_FINGERPRINT, fingerprintId.toString());
+        log.info(">> Borrado de huella ID {} registrado en outbox (#{})", fingerprintId, id);
+        return id;
+    }
+
+    private Long append(String targetPath, String operation, String payload) {
+        FirebaseOutboxEntity entry = FirebaseOutboxEntity.builder()
+                .targetPath(targetPath)
+                .operation(operation)
+                .payload(payload)
+                .status(FirebaseOutboxEntity.STATUS_PENDING)
+                .attemptCount(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+        return outboxRepository.save(entry).getId();
+    }
+}
@@ -0,0 +1,237 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.iot.attendance.infrastructure.persistence.entity.FirebaseOutboxEntity;
+import com.iot.attendance.infrastructure.persistence.repository.FirebaseOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vacía firebase_outbox hacia Firebase. Solo corre en la réplica coordinadora, para no enviar dos veces.
+ * <p>
+ * En cada ronda se leen las filas pendientes en orden de id. Las entradas de log se envían juntas en un PATCH
+ * multi-ruta y los borrados de huella se encolan en DeviceCommandBus, que los ejecuta en ese mismo orden.
+ * El orden se respeta por target_path: si una fila está esperando su reintento, las posteriores de su misma
+ * ruta esperan con ella. Una fila se borra recién cuando Firebase (o el ESP32) confirmó; tras max-attempts
+ * queda en FAILED.
+ * <p>
+ * Un borrado que vence sin respuesta pudo ejecutarse o no, y repetirlo a ciegas podría borrar una huella
+ * reasignada a ese ID. Una respuesta que llegó justo al vencer ya la confirma el bus (mismo id_target, antes del
+ * siguiente comando); si no, se reintenta una sola vez, y si ese reintento también vence la fila queda en
+ * UNCERTAIN para un operador.
+ * <p>
+ * Las push keys se asignan y se guardan antes de enviar. Si el PATCH fue rechazado se reasignan; si el resultado
+ * es incierto se reenvían las mismas, así un reintento no duplica entradas.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseOutboxRelay {
+
+    @Value("${firebase.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${firebase.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${firebase.outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${firebase.outbox.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    private final FirebaseOutboxRepository outboxRepository;
+    private final FirebaseRestClient restClient;
+    private final DeviceCommandBus commandBus;
+    private final FirebaseAdminStateWatcher stateWatcher;
+    private final IngestionLeaderElection leaderElection;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Borrados entregados al bus y aún sin resultado
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private Counter sent;
+    private Counter retried;
+    private Counter failed;
+    private Counter uncertain;
+    private DistributionSummary batchSizeSummary;
+    private Timer lag;
+
+    @PostConstruct
+    public void init() {
+        sent = Counter.builder("firebase.outbox.relayed").tag("outcome", "sent").register(meterRegistry);
+        retried = Counter.builder("firebase.outbox.relayed").tag("outcome", "retried").register(meterRegistry);
+        failed = Counter.builder("firebase.outbox.relayed").tag("outcome", "failed").register(meterRegistry);
+        uncertain = Counter.builder("firebase.outbox.relayed").tag("outcome", "uncertain").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("firebase.outbox.batch.size").register(meterRegistry);
+        lag = Timer.builder("firebase.outbox.lag").register(meterRegistry);
+        Gauge.builder("firebase.outbox.in.flight", inFlight, Set::size).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${firebase.outbox.poll-interval-ms:200}")
+    public void relay() {
+        if (!leaderElection.isCoordinator()) return;
+        try {
+            relayPending();
+        } catch (Exception e) {
+            log.error("Error en relay del outbox: {}", e.getMessage());
+        }
+    }
+
+    public long getPendingCount() {
+        return outboxRepository.countByStatus(FirebaseOutboxEntity.STATUS_PENDING);
+    }
+
+    public long getUncertainCount() {
+        return outboxRepository.countByStatus(FirebaseOutboxEntity.STATUS_UNCERTAIN);
+    }
+
+    private void relayPending() {
+        List<FirebaseOutboxEntity> pending = outboxRepository.findPending(PageRequest.of(0, batchSize));
+        if (pending.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        Set<String> blockedPaths = new HashSet<>();
+        List<FirebaseOutboxEntity> pushes = new ArrayList<>();
+        List<FirebaseOutboxEntity> deletions = new ArrayList<>();
+        for (FirebaseOutboxEntity entry : pending) {
+            // Ya entregada al bus: el bus conserva el orden, no bloquea a las siguientes
+            if (inFlight.contains(entry.getId()) || blockedPaths.contains(entry.getTargetPath())) continue;
+            if (entry.getNextAttemptAt().isAfter(now)) {
+                blockedPaths.add(entry.getTargetPath());
+                continue;
+            }
+            if (FirebaseOutboxEntity.OPERATION_DELETE_FINGERPRINT.equals(entry.getOperation())) deletions.add(entry);
+            else pushes.add(entry);
+        }
+
+        deletions.forEach(this::dispatchDeletion);
+        if (!pushes.isEmpty()) sendPushes(pushes);
+    }
+
+    private void sendPushes(List<FirebaseOutboxEntity> entries) {
+        Set<Long> freshKeys = new HashSet<>();
+        for (FirebaseOutboxEntity entry : entries) {
+            if (entry.getPushKey() == null) {
+                entry.setPushKey(PushKeys.next());
+                freshKeys.add(entry.getId());
+            }
+        }
+        if (!freshKeys.isEmpty()) outboxRepository.saveAll(entries);
+
+        ObjectNode patch = objectMapper.createObjectNode();
+        entries.forEach(entry -> patch.put(entry.getTargetPath() + "/" + entry.getPushKey(), entry.getPayload()));
+        try {
+            restClient.patch("outbox", "", patch.toString());
+            outboxRepository.deleteAllInBatch(entries);
+            LocalDateTime now = LocalDateTime.now();
+            entries.forEach(entry -> lag.record(Duration.between(entry.getCreatedAt(), now)));
+            batchSizeSummary.record(entries.size());
+            sent.increment(entries.size());
+            log.debug("✓ {} entradas del outbox enviadas a Firebase en un PATCH", entries.size());
+        } catch (FirebaseResilience.CallNotPermittedException e) {
+            // Nada se envió: se reintenta en la próxima ronda sin consumir intentos
+            log.debug("Outbox en espera: {}", e.getMessage());
+        } catch (FirebaseRestClient.HttpStatusException e) {
+            // Rechazado: nada se escribió. Solo se reasignan las claves nuevas; las de un intento incierto se conservan
+            entries.stream().filter(entry -> freshKeys.contains(entry.getId())).forEach(entry -> entry.setPushKey(null));
+            scheduleRetry(entries, e.getMessage());
+        } catch (Exception e) {
+            scheduleRetry(entries, e.getMessage());
+        }
+    }
+
+    private void dispatchDeletion(FirebaseOutboxEntity entry) {
+        inFlight.add(entry.getId());
+        commandBus.deleteFingerprint(Integer.parseInt(entry.getPayload()))
+                .whenCompleteAsync((result, error) -> {
+                    try {
+                        onDeletionResult(entry, result, error);
+                    } catch (Exception e) {
+                        log.error("Error registrando resultado del outbox #{}: {}", entry.getId(), e.getMessage());
+                    } finally {
+                        inFlight.remove(entry.getId());
+                    }
+                });
+    }
+
+    private void onDeletionResult(FirebaseOutboxEntity entry, DeviceCommandBus.CommandResult result, Throwable error) {
+        if (error == null && result.getStatus() == DeviceCommandBus.CommandStatus.ACKNOWLEDGED) {
+            acknowledge(entry);
+        } else if (error == null && result.getStatus() == DeviceCommandBus.CommandStatus.TIMED_OUT) {
+            onDeletionTimeout(entry, result);
+        } else if (error == null && result.getStatus() == DeviceCommandBus.CommandStatus.FAILED && result.getDeviceState() != null) {
+            // El ESP32 respondió con error: reintentar no cambia la respuesta
+            entry.setStatus(FirebaseOutboxEntity.STATUS_FAILED);
+            entry.setLastError(result.getError());
+            outboxRepository.save(entry);
+            failed.increment();
+        } else {
+            scheduleRetry(List.of(entry), error != null ? error.getMessage() : result.getError());
+        }
+    }
+
+    private void onDeletionTimeout(FirebaseOutboxEntity entry, DeviceCommandBus.CommandResult result) {
+        // Una respuesta tardía ya la revisó el bus contra el id_target de este comando antes de soltar /admin;
+        // aquí el espejo puede mostrar el resultado de otro comando, así que solo sirve como dato para el operador
+        if (!Boolean.TRUE.equals(entry.getTimedOut())) {
+            entry.setTimedOut(true);
+            scheduleRetry(List.of(entry), result.getError());
+            return;
+        }
+
+        FirebaseAdminStateWatcher.AdminSnapshot admin = stateWatcher.getSnapshot();
+        String state = admin.isStale() ? null : admin.getEstado();
+        entry.setStatus(FirebaseOutboxEntity.STATUS_UNCERTAIN);
+        entry.setLastError(result.getError() + (state != null ? " (estado: " + state + ")" : " (estado desconocido)"));
+        outboxRepository.save(entry);
+        uncertain.increment();
+        log.warn("⚠ Borrado de huella ID {} (outbox #{}) sin confirmar tras su reintento: queda en {} para revisión",
+                entry.getPayload(), entry.getId(), FirebaseOutboxEntity.STATUS_UNCERTAIN);
+    }
+
+    private void acknowledge(FirebaseOutboxEntity entry) {
+        outboxRepository.delete(entry);
+        lag.record(Duration.between(entry.getCreatedAt(), LocalDateTime.now()));
+        sent.increment();
+    }
+
+    private void scheduleRetry(List<FirebaseOutboxEntity> entries, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        for (FirebaseOutboxEntity entry : entries) {
+            int attempts = entry.getAttemptCount() + 1;
+            entry.setAttemptCount(attempts);
+            entry.setLastError(error);
+            if (attempts >= maxAttempts) {
+                entry.setStatus(FirebaseOutboxEntity.STATUS_FAILED);
+                failed.increment();
+            } else {
+                long backoff = Math.min(maxBackoffMs, retryBackoffMs << Math.min(attempts - 1, 20));
+                entry.setNextAttemptAt(now.plus(Duration.ofMillis(backoff)));
+                retried.increment();
+            }
+        }
+        outboxRepository.saveAll(entries);
+        log.warn("⚠ {} entradas del outbox sin enviar ({}): {}", entries.size(), entries.get(0).getTargetPath(), error);
+    }
+}
@@ -1,116 +1,147 @@
 package com.iot.attendance.infrastructure.firebase;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.iot.attendance.application.dto.request.RfidAttendanceRequest;
-import com.iot.attendance.application.service.AccessAuditService;
-import com.iot.attendance.application.service.impl.SmartAttendanceProcessor;
-import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
-import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polling adaptativo por nodo: mientras llegan eventos se consulta cada min-interval-ms; cuando el nodo
+ * está quieto el intervalo se duplica hasta max-interval-ms en horario laboral, o hasta
+ * off-hours-max-interval-ms fuera de él. Cualquier evento devuelve el nodo al modo ráfaga.
+ * Con varias sedes hay un poller por sede y nodo; cada uno consulta solo si esta réplica es dueña de su sede.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@ConditionalOnProperty(prefix = "firebase.ingestion", name = "mode", havingValue = "polling", matchIfMissing = true)
 public class FirebasePollingService {
 
-    @Value("${firebase.database-url}")
-    private String databaseUrl;
-
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    private final RfidCardRepository rfidCardRepository;
-    private final SmartAttendanceProcessor smartAttendanceProcessor;
-    private final AccessAuditService accessAuditService;
-
-    private static final Pattern RFID_PATTERN = Pattern.compile("Marcaje RFID: ([A-F0-9 ]+)");
-    private static final Pattern ACCESS_GRANTED_PATTERN = Pattern.compile("Puerta abierta ID: (\\d+)");
-    private static final Pattern ACCESS_DENIED_PATTERN = Pattern.compile("Intento fallido huella|Huella desconocida");
-
-    private final Set<String> processedAttendanceKeys = Collections.synchronizedSet(new HashSet<>());
-    private final Set<String> processedAccessKeys = Collections.synchronizedSet(new HashSet<>());
-    private final Set<String> processedSecurityKeys = Collections.synchronizedSet(new HashSet<>());
-
-    @Scheduled(fixedRate = 3000)
-    public void pollRecentAttendance() {
-        pollGeneric("asistencia", processedAttendanceKeys, this::processAttendanceMessage);
+    @Value("${firebase.ingestion.polling.min-interval-ms:500}")
+    private long minIntervalMs;
+
+    @Value("${firebase.ingestion.polling.max-interval-ms:5000}")
+    private long maxIntervalMs;
+
+    @Value("${firebase.ingestion.polling.off-hours-max-interval-ms:60000}")
+    private long offHoursMaxIntervalMs;
+
+    @Value("${firebase.ingestion.polling.multiplexed:false}")
+    private boolean multiplexed;
+
+    @Value("${firebase.ingestion.leader-election.renew-interval-ms:2000}")
+    private long leaderCheckIntervalMs;
+
+    private final FirebaseLogCatchUpService catchUpService;
+    private final WorkingHoursCalendar workingHoursCalendar;
+    private final TaskScheduler taskScheduler;
+    private final MeterRegistry meterRegistry;
+    private final IngestionLeaderElection leaderElection;
+    private final IngestionPartitions partitions;
+
+    private final Map<LogPartition, NodePoller> pollers = new LinkedHashMap<>();
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (String site : partitions.getSites()) {
+            List<LogPartition> sitePartitions = partitions.getPartitions(site);
+            if (multiplexed) {
+                // Un solo ciclo por sede: las consultas de sus nodos viajan juntas sobre la misma conexión
+                NodePoller poller = new NodePoller(site, "logs", sitePartitions);
+                sitePartitions.forEach(partition -> pollers.put(partition, poller));
+                poller.scheduleNext(0);
+            } else {
+                for (LogPartition partition : sitePartitions) {
+                    NodePoller poller = new NodePoller(site, partition.node().getNodeName(), List.of(partition));
+                    pollers.put(partition, poller);
+                    poller.scheduleNext(0);
+                }
+            }
+        }
+        log.info("✓ Polling adaptativo iniciado ({} - {} ms, fuera de horario hasta {} ms{})",
+                minIntervalMs, maxIntervalMs, offHoursMaxIntervalMs, multiplexed ? ", multiplexado" : "");
     }
 
-    @Scheduled(fixedRate = 3000)
-    public void pollAccessLogs() {
-        pollGeneric("accesos", processedAccessKeys, this::processAccessGrantedMessage);
+    @PreDestroy
+    public void stop() {
+        running = false;
+        pollers.values().stream().distinct().forEach(NodePoller::cancel);
     }
 
-    @Scheduled(fixedRate = 3000)
-    public void pollSecurityLogs() {
-        pollGeneric("seguridad", processedSecurityKeys, this::processAccessDeniedMessage);
-    }
+    private class NodePoller {
+
+        private final String site;
+        private final String name;
+        private final List<LogPartition> partitions;
+        private final AtomicLong intervalMs = new AtomicLong(minIntervalMs);
+        private final Counter cycles;
+        private volatile ScheduledFuture<?> next;
+
+        NodePoller(String site, String name, List<LogPartition> partitions) {
+            this.site = site;
+            this.name = name;
+            this.partitions = partitions;
+            this.cycles = Counter.builder("firebase.ingestion.poll.cycles")
+                    .tag("site", site).tag("node", name).register(meterRegistry);
+            Gauge.builder("firebase.ingestion.poll.interval", intervalMs, AtomicLong::get)
+                    .tag("site", site).tag("node", name).baseUnit("milliseconds").register(meterRegistry);
+        }
 
-    private void pollGeneric(String node, Set<String> processedKeys, java.util.function.Consumer<String> processor) {
-        try {
-            String url = String.format("%s/logs/%s.json?orderBy=\"$key\"&limitToLast=5", databaseUrl, node);
-            String response = restTemplate.getForObject(url, String.class);
-            if (response == null || response.equals("null")) return;
-            JsonNode rootNode = objectMapper.readTree(response);
-            Iterator<Map.Entry<String, JsonNode>> fields = rootNode.fields();
-            while (fields.hasNext()) {
-                Map.Entry<String, JsonNode> entry = fields.next();
-                String key = entry.getKey();
-                if (!processedKeys.contains(key)) {
-                    processor.accept(entry.getValue().asText());
-                    processedKeys.add(key);
-                    if (processedKeys.size() > 1000) processedKeys.clear();
-                }
+        void poll() {
+            if (!running) return;
+            // Una réplica que no es dueña de la sede no consulta Firebase; solo espera a que la sede quede libre
+            if (!leaderElection.isLeader(site)) {
+                scheduleNext(leaderCheckIntervalMs);
+                return;
             }
-        } catch (Exception e) { log.error("Error polling {}: {}", node, e.getMessage()); }
-    }
+            cycles.increment();
 
-    private void processAttendanceMessage(String message) {
-        Matcher matcher = RFID_PATTERN.matcher(message);
-        if (matcher.find()) {
-            String rawUid = matcher.group(1).toUpperCase().replace(" ", "").trim();
-            Optional<RfidCardEntity> cardOpt = rfidCardRepository.findById(rawUid);
-            if (cardOpt.isEmpty()) {
-                log.warn("⚠ RFID NO REGISTRADO: {}", rawUid);
-                return;
+            int processed = 0;
+            try {
+                processed = partitions.size() == 1 ? catchUpService.drain(partitions.get(0)) : catchUpService.drainAll(partitions);
+            } catch (Exception e) {
+                log.error("Error polling {}/{}: {}", site, name, e.getMessage());
             }
-            RfidCardEntity card = cardOpt.get();
-            card.setLastSeen(LocalDateTime.now());
-            rfidCardRepository.save(card);
-            if (card.getWorker() != null) processCheckInCheckOut(rawUid);
+
+            scheduleNext(nextInterval(processed > 0));
         }
-    }
 
-    private void processAccessGrantedMessage(String message) {
-        Matcher matcher = ACCESS_GRANTED_PATTERN.matcher(message);
-        if (matcher.find()) {
-            accessAuditService.logAccessGranted(Integer.parseInt(matcher.group(1)), LocalDateTime.now());
+        private long nextInterval(boolean hadEvents) {
+            if (hadEvents) {
+                intervalMs.set(minIntervalMs);
+            } else {
+                long cap = workingHoursCalendar.isWorkingHours(LocalDateTime.now()) ? maxIntervalMs : offHoursMaxIntervalMs;
+                intervalMs.set(Math.min(intervalMs.get() * 2, cap));
+            }
+            return intervalMs.get();
         }
-    }
 
-    private void processAccessDeniedMessage(String message) {
-        if (ACCESS_DENIED_PATTERN.matcher(message).find()) {
-            log.info(">> [ACCESO DENEGADO DETECTADO]");
-            accessAuditService.logAccessDenied(null, LocalDateTime.now());
+        void scheduleNext(long delayMs) {
+            if (!running) return;
+            next = taskScheduler.schedule(this::poll, Instant.now().plusMillis(delayMs));
         }
-    }
 
-    private void processCheckInCheckOut(String rfidUid) {
-        try {
-            RfidAttendanceRequest request = RfidAttendanceRequest.builder()
-                    .rfidUid(rfidUid).timestamp(LocalDateTime.now()).build();
-            smartAttendanceProcessor.processRfidEvent(request);
-        } catch (Exception e) { log.error("Error procesando asistencia: {}", e.getMessage()); }
+        void cancel() {
+            ScheduledFuture<?> current = next;
+            if (current != null) current.cancel(false);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,262 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capa de protección alrededor de FirebaseRestClient: circuit breaker, bulkhead y política de reintentos.
+ * <p>
+ * El circuito cuenta los resultados de las últimas window-size llamadas; los errores de red, los 5xx/429 y las
+ * llamadas más lentas que slow-call-ms cuentan como fallo. Superado failure-rate-threshold se abre y toda llamada
+ * falla al instante con CallNotPermittedException durante open-duration-ms; luego deja pasar half-open-calls
+ * llamadas de prueba y, si todas salen bien, se cierra.
+ * <p>
+ * El bulkhead limita las llamadas simultáneas por nodo raíz (admin, logs, ...): si Firebase está lento, el tráfico
+ * de ingesta no puede ocupar todo el cupo y dejar sin conexiones a los comandos de /admin, y viceversa.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseResilience {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Value("${firebase.resilience.circuit.window-size:20}")
+    private int windowSize;
+
+    @Value("${firebase.resilience.circuit.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${firebase.resilience.circuit.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${firebase.resilience.circuit.slow-call-ms:3000}")
+    private long slowCallMs;
+
+    @Value("${firebase.resilience.circuit.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${firebase.resilience.circuit.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${firebase.resilience.bulkhead.max-concurrent-calls:10}")
+    private int maxConcurrentCalls;
+
+    @Getter
+    @Value("${firebase.resilience.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${firebase.resilience.retry.initial-backoff-ms:200}")
+    private long initialBackoffMs;
+
+    @Value("${firebase.resilience.retry.max-backoff-ms:2000}")
+    private long maxBackoffMs;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    // Ventana circular de resultados (true = fallo), protegida por el monitor de this
+    private boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    private Counter succeeded;
+    private Counter failed;
+    private Counter slow;
+    private Counter rejectedOpen;
+    private Counter rejectedBulkhead;
+    private Counter retries;
+
+    @PostConstruct
+    public void init() {
+        window = new boolean[windowSize];
+        Gauge.builder("firebase.circuit.state", this, r -> r.getState().ordinal())
+                .description("0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN")
+                .register(meterRegistry);
+        Gauge.builder("firebase.circuit.failure.rate", this, FirebaseResilience::getFailureRate).register(meterRegistry);
+        succeeded = Counter.builder("firebase.resilience.calls").tag("outcome", "success").register(meterRegistry);
+        failed = Counter.builder("firebase.resilience.calls").tag("outcome", "failure").register(meterRegistry);
+        slow = Counter.builder("firebase.resilience.calls").tag("outcome", "slow").register(meterRegistry);
+        rejectedOpen = Counter.builder("firebase.resilience.calls").tag("outcome", "rejected_circuit_open").register(meterRegistry);
+        rejectedBulkhead = Counter.builder("firebase.resilience.calls").tag("outcome", "rejected_bulkhead_full").register(meterRegistry);
+        retries = Counter.builder("firebase.resilience.retries").register(meterRegistry);
+    }
+
+    /**
+     * Pide permiso para una llamada al endpoint. Nunca bloquea: con el circuito abierto o el bulkhead lleno
+     * lanza CallNotPermittedException. El permiso obtenido debe liberarse con release.
+     */
+    public Permit acquire(String endpoint) throws CallNotPermittedException {
+        String group = group(endpoint);
+        boolean probe;
+        long permitGeneration;
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.OPEN || (state == State.HALF_OPEN && halfOpenInFlight >= halfOpenCalls)) {
+                rejectedOpen.increment();
+                throw new CallNotPermittedException("Circuito de Firebase abierto, llamada a " + endpoint + " rechazada");
+            }
+            probe = state == State.HALF_OPEN;
+            if (probe) halfOpenInFlight++;
+            permitGeneration = generation;
+        }
+
+        if (!bulkhead(group).tryAcquire()) {
+            synchronized (this) {
+                if (probe && generation == permitGeneration) halfOpenInFlight--;
+            }
+            rejectedBulkhead.increment();
+            throw new CallNotPermittedException("Bulkhead de Firebase '" + group + "' lleno ("
+                    + maxConcurrentCalls + " llamadas en curso), llamada a " + endpoint + " rechazada");
+        }
+        return new Permit(group, permitGeneration, System.nanoTime());
+    }
+
+    // failure: error de red o respuesta 5xx/429. Una llamada lenta cuenta como fallo aunque haya respondido.
+    public void release(Permit permit, boolean failure) {
+        bulkheads.get(permit.group()).release();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - permit.startedNanos());
+        boolean isSlow = !failure && elapsedMs > slowCallMs;
+        (failure ? failed : isSlow ? slow : succeeded).increment();
+        onResult(permit, failure || isSlow);
+    }
+
+    // Se reintentan fallos transitorios; nunca un rechazo local ni un 4xx
+    public boolean isRetryable(Throwable error) {
+        if (error instanceof CallNotPermittedException) return false;
+        if (error instanceof FirebaseRestClient.HttpStatusException e) return e.getStatus() >= 500 || e.getStatus() == 429;
+        return error instanceof IOException;
+    }
+
+    // Backoff exponencial con jitter: entre la mitad y el total del tope del intento, para no reintentar en bloque
+    public long retryDelayMs(int attempt) {
+        retries.increment();
+        long cap = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            transition(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return windowCount == 0 ? 0 : windowFailures * 100.0 / windowCount;
+    }
+
+    public synchronized int getWindowCount() {
+        return windowCount;
+    }
+
+    public Map<String, Integer> getAvailableCalls() {
+        Map<String, Integer> available = new ConcurrentHashMap<>();
+        bulkheads.forEach((group, semaphore) -> available.put(group, semaphore.availablePermits()));
+        return available;
+    }
+
+    private synchronized void onResult(Permit permit, boolean failure) {
+        // Resultados de llamadas iniciadas antes del último cambio de estado no cuentan
+        if (permit.generation() != generation) return;
+
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight--;
+            if (failure) {
+                transition(State.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED) return;
+
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) windowFailures++;
+        windowIndex = (windowIndex + 1) % windowSize;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            log.warn("⚠ Tasa de fallos de Firebase {}% en las últimas {} llamadas", windowFailures * 100 / windowCount, windowCount);
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State next) {
+        State previous = state;
+        state = next;
+        generation++;
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        if (next == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            log.error("Circuito de Firebase ABIERTO por {} ms: las llamadas fallan de inmediato", openDurationMs);
+        } else if (next == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+            log.info("✓ Circuito de Firebase cerrado");
+        } else {
+            log.info(">> Circuito de Firebase {} -> HALF_OPEN: probando con {} llamadas", previous, halfOpenCalls);
+        }
+    }
+
+    private Semaphore bulkhead(String group) {
+        return bulkheads.computeIfAbsent(group, key -> {
+            Semaphore semaphore = new Semaphore(maxConcurrentCalls);
+            Gauge.builder("firebase.bulkhead.available", semaphore, Semaphore::availablePermits)
+                    .tag("group", key)
+                    .register(meterRegistry);
+            return semaphore;
+        });
+    }
+
+    // El grupo es el nodo raíz del endpoint lógico: "logs/accesos/compaction" -> "logs"
+    private String group(String endpoint) {
+        String normalized = endpoint.startsWith("/") ? endpoint.substring(1) : endpoint;
+        int slash = normalized.indexOf('/');
+        return slash < 0 ? normalized : normalized.substring(0, slash);
+    }
+
+    public record Permit(String group, long generation, long startedNanos) {
+    }
+
+    /**
+     * La llamada no se envió: circuito abierto o bulkhead lleno. Nada llegó a Firebase.
+     */
+    public static class CallNotPermittedException extends IOException {
+
+        public CallNotPermittedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transporte único para todo el tráfico REST hacia Firebase Realtime Database.
+ * Un solo HttpClient del JDK: HTTP/2 (las peticiones concurrentes se multiplexan sobre la misma conexión TLS),
+ * conexiones reutilizadas, timeouts de conexión y lectura configurados y envío asíncrono.
+ * Cada petición se mide en firebase.rest.latency con el endpoint lógico, el método y el resultado como tags,
+ * publicando histograma para poder calcular percentiles por endpoint.
+ * <p>
+ * Toda petición pasa por FirebaseResilience (circuit breaker y bulkhead): con Firebase caído o saturado falla al
+ * instante en vez de esperar el timeout. GET, PUT, PATCH y DELETE son idempotentes y se reintentan con backoff y
+ * jitter ante fallos transitorios; POST no se reintenta.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseRestClient {
+
+    @Value("${firebase.database-url}")
+    private String databaseUrl;
+
+    @Value("${firebase.connection-timeout-ms:30000}")
+    private long connectionTimeoutMs;
+
+    @Value("${firebase.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "PUT", "PATCH", "DELETE");
+
+    private final MeterRegistry meterRegistry;
+    private final FirebaseResilience resilience;
+
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @PostConstruct
+    public void init() {
+        baseUrl = databaseUrl.endsWith("/") ? databaseUrl.substring(0, databaseUrl.length() - 1) : databaseUrl;
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectionTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        log.info("✓ Cliente REST de Firebase listo ({}, HTTP/2, timeouts {}/{} ms)", baseUrl, connectionTimeoutMs, readTimeoutMs);
+    }
+
+    public URI uri(String path, String query) {
+        String normalized = path.startsWith("/") ? path.substring(1) : path;
+        return URI.create(baseUrl + "/" + normalized + ".json" + (query != null && !query.isEmpty() ? "?" + query : ""));
+    }
+
+    // ---- Asíncrono: el futuro falla con HttpStatusException (envuelta) si la respuesta no es 200 ----
+
+    public CompletableFuture<String> getAsync(String endpoint, String path, String query) {
+        return sendAsync(endpoint, "GET", uri(path, query), HttpRequest.BodyPublishers.noBody());
+    }
+
+    public CompletableFuture<String> putAsync(String endpoint, String path, String json) {
+        return sendAsync(endpoint, "PUT", uri(path, null), HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    public CompletableFuture<String> postAsync(String endpoint, String path, String json) {
+        return sendAsync(endpoint, "POST", uri(path, null), HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    public CompletableFuture<String> patchAsync(String endpoint, String path, String json) {
+        return sendAsync(endpoint, "PATCH", uri(path, null), HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    public CompletableFuture<String> deleteAsync(String endpoint, String path) {
+        return sendAsync(endpoint, "DELETE", uri(path, null), HttpRequest.BodyPublishers.noBody());
+    }
+
+    // ---- Síncrono ----
+
+    public String get(String endpoint, String path, String query) throws IOException {
+        return join(getAsync(endpoint, path, query));
+    }
+
+    public String put(String endpoint, String path, String json) throws IOException {
+        return join(putAsync(endpoint, path, json));
+    }
+
+    public String post(String endpoint, String path, String json) throws IOException {
+        return join(postAsync(endpoint, path, json));
+    }
+
+    public String patch(String endpoint, String path, String json) throws IOException {
+        return join(patchAsync(endpoint, path, json));
+    }
+
+    public String delete(String endpoint, String path) throws IOException {
+        return join(deleteAsync(endpoint, path));
+    }
+
+    /**
+     * Abre un stream SSE. Sin timeout de lectura: la vida de la conexión la controla quien lo lee
+     * (keep-alive de Firebase y su propio control de inactividad).
+     */
+    public HttpResponse<InputStream> openStream(String endpoint, String path, String query)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(path, query))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        long started = System.nanoTime();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        record(endpoint, "STREAM", outcome(response.statusCode()), started);
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new HttpStatusException(response.statusCode(), "/" + path);
+        }
+        return response;
+    }
+
+    private CompletableFuture<String> sendAsync(String endpoint, String method, URI uri, HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(readTimeoutMs))
+                .method(method, body);
+        if (!"GET".equals(method) && !"DELETE".equals(method)) builder.header("Content-Type", "application/json");
+        return attempt(endpoint, builder.build(), 1);
+    }
+
+    private CompletableFuture<String> attempt(String endpoint, HttpRequest request, int attempt) {
+        FirebaseResilience.Permit permit;
+        try {
+            permit = resilience.acquire(endpoint);
+        } catch (FirebaseResilience.CallNotPermittedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long started = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    record(endpoint, request.method(), error != null ? "ERROR" : outcome(response.statusCode()), started);
+                    resilience.release(permit, error != null || response.statusCode() >= 500 || response.statusCode() == 429);
+                })
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new HttpStatusException(response.statusCode(), request.uri().getPath()));
+                    }
+                    return response.body();
+                })
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (attempt >= resilience.getMaxAttempts() || !IDEMPOTENT_METHODS.contains(request.method())
+                            || !resilience.isRetryable(cause)) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    long delay = resilience.retryDelayMs(attempt);
+                    log.debug(">> Reintentando {} {} en {} ms (intento {}): {}", request.method(), endpoint, delay, attempt + 1, cause.getMessage());
+                    return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attempt(endpoint, request, attempt + 1));
+                });
+    }
+
+    private void record(String endpoint, String method, String outcome, long startedNanos) {
+        Timer.builder("firebase.rest.latency")
+                .tag("endpoint", endpoint)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private String outcome(int status) {
+        return status == 200 ? "SUCCESS" : status >= 500 ? "SERVER_ERROR" : "CLIENT_ERROR";
+    }
+
+    public static String join(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Firebase respondió con un estado distinto de 200: la escritura no se aplicó. Cualquier otra
+     * IOException (timeout, conexión cortada) deja el resultado indeterminado.
+     */
+    @Getter
+    public static class HttpStatusException extends IOException {
+
+        private final int status;
+
+        public HttpStatusException(int status, String path) {
+            super("HTTP " + status + " en " + path);
+            this.status = status;
+        }
+    }
+}
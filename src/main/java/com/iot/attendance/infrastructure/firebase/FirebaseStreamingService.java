@@ -0,0 +1,242 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "firebase.ingestion", name = "mode", havingValue = "streaming")
+public class FirebaseStreamingService {
+
+    @Value("${firebase.ingestion.stream.reconnect-initial-delay-ms:1000}")
+    private long reconnectInitialDelayMs;
+
+    @Value("${firebase.ingestion.stream.reconnect-max-delay-ms:30000}")
+    private long reconnectMaxDelayMs;
+
+    @Value("${firebase.ingestion.stream.idle-timeout-ms:75000}")
+    private long idleTimeoutMs;
+
+    private final FirebaseLogEventHandler eventHandler;
+    private final FirebaseLogCatchUpService catchUpService;
+    private final IngestionLeaderElection leaderElection;
+    private final IngestionPartitions partitions;
+    private final FirebaseRestClient restClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<LogPartition, StreamConnection> connections = new LinkedHashMap<>();
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor = Executors.newFixedThreadPool(partitions.getPartitions().size(), r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+
+        for (LogPartition partition : partitions.getPartitions()) {
+            StreamConnection connection = new StreamConnection(partition);
+            connections.put(partition, connection);
+            executor.submit(connection::run);
+        }
+        log.info("✓ Ingesta por streaming iniciada para {} particiones", connections.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        connections.values().forEach(StreamConnection::close);
+        if (executor != null) executor.shutdownNow();
+    }
+
+    // Al perder una sede se cortan sus streams de inmediato para no ingerir en paralelo con la nueva dueña
+    @EventListener
+    public void onLeadershipChange(IngestionLeadershipEvent event) {
+        if (event.isLeader()) return;
+        connections.forEach((partition, connection) -> {
+            if (partition.site().equals(event.getSite())) connection.close();
+        });
+    }
+
+    // Firebase envía keep-alive cada ~30s; si no llega nada, la conexión está muerta y se fuerza reconexión
+    @Scheduled(fixedDelay = 15000)
+    public void checkIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (StreamConnection connection : connections.values()) {
+            if (connection.isConnected() && now - connection.lastActivity > idleTimeoutMs) {
+                log.warn("⚠ Stream {} sin actividad por {} ms, reconectando", connection.partition.getId(), idleTimeoutMs);
+                connection.close();
+            }
+        }
+    }
+
+    private class StreamConnection {
+
+        private final LogPartition partition;
+        private volatile InputStream body;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        StreamConnection(LogPartition partition) {
+            this.partition = partition;
+        }
+
+        boolean isConnected() {
+            return body != null;
+        }
+
+        void run() {
+            Thread.currentThread().setName("firebase-stream-" + partition.site() + "-" + partition.node().getNodeName());
+            long delay = reconnectInitialDelayMs;
+
+            while (running) {
+                if (!leaderElection.isLeader(partition.site())) {
+                    try {
+                        Thread.sleep(reconnectInitialDelayMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    // Antes de abrir el stream se drena todo lo pendiente desde el cursor persistido
+                    catchUpService.drain(partition);
+                    connect();
+                    delay = reconnectInitialDelayMs;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    if (running) log.error("Error en stream {}: {}", partition.getId(), e.getMessage());
+                } finally {
+                    close();
+                }
+
+                if (!running) return;
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay = Math.min(delay * 2, reconnectMaxDelayMs);
+            }
+        }
+
+        private void connect() throws IOException, InterruptedException {
+            // Los streams de todas las particiones se multiplexan sobre la conexión HTTP/2 compartida
+            HttpResponse<InputStream> response = restClient.openStream(partition.node().getPath(), partition.path(), streamQuery());
+            body = response.body();
+            lastActivity = System.currentTimeMillis();
+            log.info("✓ Stream conectado: /{} (desde: {})", partition.path(),
+                    catchUpService.getResumeKey(partition).orElse("últimos 5"));
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                String event = null;
+                String line;
+                while (running && leaderElection.isLeader(partition.site()) && (line = reader.readLine()) != null) {
+                    lastActivity = System.currentTimeMillis();
+                    if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                    } else if (line.startsWith("data:") && event != null) {
+                        if (!onEvent(event, line.substring(5).trim())) return;
+                        event = null;
+                    }
+                }
+            }
+        }
+
+        private String streamQuery() {
+            String lastKey = catchUpService.getResumeKey(partition).orElse(null);
+            return lastKey != null
+                    ? "orderBy=" + encode("\"$key\"") + "&startAt=" + encode("\"" + lastKey + "\"")
+                    : "orderBy=" + encode("\"$key\"") + "&limitToLast=5";
+        }
+
+        // Retorna false cuando el servidor pide cerrar el stream
+        private boolean onEvent(String event, String data) throws IOException {
+            switch (event) {
+                case "put", "patch" -> {
+                    JsonNode payload = objectMapper.readTree(data);
+                    dispatch(payload.path("path").asText("/"), payload.path("data"));
+                    eventHandler.flush();
+                }
+                case "keep-alive" -> { }
+                case "cancel", "auth_revoked" -> {
+                    log.warn("⚠ Stream {} cerrado por servidor: {}", partition.getId(), event);
+                    return false;
+                }
+                default -> log.debug("Evento de stream ignorado: {}", event);
+            }
+            return true;
+        }
+
+        private void dispatch(String path, JsonNode data) {
+            if (data == null || data.isNull() || data.isMissingNode()) return;
+
+            if ("/".equals(path)) {
+                if (!data.isObject()) return;
+                // El snapshot inicial no viene ordenado; se procesa por push key para respetar el cursor
+                TreeMap<String, JsonNode> children = new TreeMap<>();
+                Iterator<Map.Entry<String, JsonNode>> fields = data.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> entry = fields.next();
+                    children.put(entry.getKey(), entry.getValue());
+                }
+                children.forEach(this::dispatchChild);
+            } else {
+                // path = "/<pushKey>"
+                String key = path.substring(1);
+                if (!key.contains("/")) dispatchChild(key, data);
+            }
+        }
+
+        // Un error corta el stream; la reconexión retoma desde el cursor y reintenta el evento
+        private void dispatchChild(String key, JsonNode value) {
+            if (value.isNull()) return;
+            eventHandler.handle(partition, key, value.asText());
+        }
+
+        void close() {
+            InputStream current = body;
+            body = null;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private String encode(String value) {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.application.service.IngestionDeadLetterService;
+import com.iot.attendance.application.service.impl.IngestionBatchProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reparte los eventos recibidos de Firebase en N carriles según la tarjeta o huella que los originó.
+ * Cada carril conserva el orden de llegada de sus eventos (un check-in y su check-out nunca se invierten)
+ * y los agrupa en micro-lotes acotados por tamaño y tiempo que IngestionBatchProcessor escribe en una
+ * sola transacción. Carriles distintos procesan en paralelo.
+ * <p>
+ * Los eventos de puerta (accesos/seguridad) van a carriles prioritarios propios, de modo que nunca esperan
+ * detrás de un backlog de marcajes. Cada carril tiene capacidad fija; al llenarse se aplica la política
+ * configurada: BLOCK (el lector de Firebase espera), SPILL (desborde a disco) o DROP_OLDEST (se descarta
+ * el evento más antiguo y se cuenta).
+ * <p>
+ * Con el journal activo los carriles se alimentan de él: un hilo lector toma los registros ya sincronizados
+ * a disco y los reparte, así que una política BLOCK frena a ese lector y no al de Firebase.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionBatchPipeline {
+
+    public enum OverflowPolicy {
+        BLOCK, SPILL, DROP_OLDEST
+    }
+
+    @Value("${firebase.ingestion.lanes:4}")
+    private int laneCount;
+
+    @Value("${firebase.ingestion.priority-lanes:1}")
+    private int priorityLaneCount;
+
+    @Value("${firebase.ingestion.queue.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${firebase.ingestion.queue.overflow-policy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${firebase.ingestion.queue.spill-directory:data/spill}")
+    private Path spillDirectory;
+
+    @Value("${firebase.ingestion.batch.max-size:200}")
+    private int maxBatchSize;
+
+    @Value("${firebase.ingestion.batch.max-wait-ms:50}")
+    private long maxWaitMs;
+
+    @Value("${firebase.ingestion.batch.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${firebase.ingestion.batch.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    private final IngestionBatchProcessor batchProcessor;
+    private final IngestionCommitTracker commitTracker;
+    private final IngestionCursorService cursorService;
+    private final IngestionDeadLetterService deadLetterService;
+    private final IngestionJournal journal;
+    private final IngestionPartitions partitions;
+    private final DeviceMessageParser messageParser;
+    private final MeterRegistry meterRegistry;
+
+    private Lane[] lanes;
+    private Lane[] priorityLanes;
+    private Thread journalReader;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        running = true;
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane("ingestion-lane-" + i, false);
+        }
+        priorityLanes = new Lane[Math.max(priorityLaneCount, 1)];
+        for (int i = 0; i < priorityLanes.length; i++) {
+            priorityLanes[i] = new Lane("ingestion-priority-lane-" + i, true);
+        }
+        allLanes().forEach(lane -> lane.thread.start());
+        if (journal.isEnabled()) {
+            Gauge.builder("firebase.ingestion.journal.unread", journal, IngestionJournal::getUnreadCount).register(meterRegistry);
+            journalReader = new Thread(this::readJournal, "ingestion-journal-reader");
+            journalReader.setDaemon(true);
+            journalReader.start();
+        }
+        log.info("✓ Pipeline de ingesta iniciado con {} carriles + {} prioritarios (capacidad {}, desborde {})",
+                laneCount, priorityLanes.length, queueCapacity, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Lo que quede en cola no avanzó el cursor: se recupera del journal o se vuelve a leer de Firebase al reiniciar
+        running = false;
+        allLanes().forEach(lane -> lane.thread.interrupt());
+        if (journalReader != null) journalReader.interrupt();
+    }
+
+    /**
+     * Encola el evento en su carril. La clave se registra en vuelo antes de encolar (un carril podría confirmarla
+     * antes); si el encolado falla (interrupción o error de desborde) se retira y el error llega al llamador,
+     * que no debe dar el evento por recibido.
+     */
+    public void submit(IngestionEvent event) throws InterruptedException {
+        commitTracker.begin(event.partition(), event.key());
+        Lane[] group = event.node() == FirebaseLogNode.ASISTENCIA ? lanes : priorityLanes;
+        int index = Math.floorMod(batchProcessor.partitionKey(event).hashCode(), group.length);
+        boolean queued = false;
+        try {
+            group[index].offer(event);
+            queued = true;
+        } finally {
+            if (!queued) commitTracker.cancel(event.partition(), event.key());
+        }
+    }
+
+    public int getQueueSize() {
+        return journal.getUnreadCount() + allLanes().mapToInt(lane -> lane.queue.size() + lane.getSpilled()).sum();
+    }
+
+    // Reparte en orden lo que el journal ya tiene en disco; un evento que no se pudo encolar se reintenta
+    // antes de pasar al siguiente
+    private void readJournal() {
+        try {
+            while (running) {
+                for (IngestionEvent record : journal.poll(maxBatchSize, 1000)) {
+                    IngestionEvent event = new IngestionEvent(record.partition(), record.key(), record.message(),
+                            messageParser.parse(record.node(), record.message()), record.receivedAt());
+                    while (true) {
+                        try {
+                            submit(event);
+                            break;
+                        } catch (UncheckedIOException e) {
+                            log.error("Error encolando {} ({}) desde el journal: {}", event.partition().getId(), event.key(), e.getMessage());
+                            Thread.sleep(retryBackoffMs);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Stream<Lane> allLanes() {
+        return Stream.concat(Arrays.stream(lanes), Arrays.stream(priorityLanes));
+    }
+
+    private void commit(List<IngestionEvent> events) {
+        Map<LogPartition, List<String>> keysByPartition = new HashMap<>();
+        for (IngestionEvent event : events) {
+            keysByPartition.computeIfAbsent(event.partition(), p -> new ArrayList<>()).add(event.key());
+        }
+        keysByPartition.forEach((partition, keys) -> {
+            String safeKey = commitTracker.complete(partition, keys);
+            if (safeKey == null) return;
+            try {
+                cursorService.advance(partition, safeKey);
+            } catch (Exception e) {
+                // El siguiente lote confirmado vuelve a escribir una posición igual o mayor
+                log.error("Error avanzando cursor {}: {}", partition.getId(), e.getMessage());
+            }
+        });
+        journal.markCommitted(events);
+    }
+
+    private record Queued(IngestionEvent event, long enqueuedAt) {
+    }
+
+    private class Lane {
+
+        private final String name;
+        private final BlockingQueue<Queued> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final IngestionSpillFile spill;
+        private final Thread thread;
+        private final Timer waitTimer;
+        private final Counter dropped;
+        private final Counter spilled;
+
+        Lane(String name, boolean priority) throws IOException {
+            this.name = name;
+            this.spill = overflowPolicy == OverflowPolicy.SPILL ? new IngestionSpillFile(spillDirectory.resolve(name + ".spill"), partitions) : null;
+            thread = new Thread(this::drainLoop, name);
+            thread.setDaemon(true);
+
+            String lanePriority = priority ? "high" : "normal";
+            Gauge.builder("firebase.ingestion.queue.depth", queue, Collection::size)
+                    .tag("lane", name).tag("priority", lanePriority).register(meterRegistry);
+            Gauge.builder("firebase.ingestion.queue.spilled", this, Lane::getSpilled)
+                    .tag("lane", name).tag("priority", lanePriority).register(meterRegistry);
+            waitTimer = Timer.builder("firebase.ingestion.queue.wait")
+                    .tag("lane", name).tag("priority", lanePriority).register(meterRegistry);
+            dropped = Counter.builder("firebase.ingestion.queue.dropped")
+                    .tag("lane", name).tag("priority", lanePriority).register(meterRegistry);
+            spilled = Counter.builder("firebase.ingestion.queue.spilled.total")
+                    .tag("lane", name).tag("priority", lanePriority).register(meterRegistry);
+        }
+
+        void offer(IngestionEvent event) throws InterruptedException {
+            Queued queued = new Queued(event, System.nanoTime());
+            switch (overflowPolicy) {
+                case BLOCK -> queue.put(queued);
+                case SPILL -> offerOrSpill(queued);
+                case DROP_OLDEST -> {
+                    while (!queue.offer(queued)) {
+                        Queued oldest = queue.poll();
+                        if (oldest != null) drop(oldest.event());
+                    }
+                }
+            }
+        }
+
+        // Una vez que hay desborde, todo lo nuevo va a disco hasta vaciarlo, para no alterar el orden
+        private synchronized void offerOrSpill(Queued queued) {
+            if (spill.getPending() == 0 && queue.offer(queued)) return;
+            try {
+                spill.append(queued.event());
+                spilled.increment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo desbordar a disco el carril " + name, e);
+            }
+        }
+
+        private synchronized void refillFromSpill() {
+            if (spill == null || spill.getPending() == 0) return;
+            int free = queue.remainingCapacity();
+            if (free < queueCapacity / 2) return;
+            try {
+                for (IngestionEvent event : spill.read(free)) {
+                    queue.add(new Queued(new IngestionEvent(event.partition(), event.key(), event.message(),
+                            messageParser.parse(event.node(), event.message()), event.receivedAt()), System.nanoTime()));
+                }
+            } catch (IOException e) {
+                log.error("Error leyendo desborde del carril {}: {}", name, e.getMessage());
+            }
+        }
+
+        int getSpilled() {
+            return spill != null ? spill.getPending() : 0;
+        }
+
+        // Descartar es una pérdida explícita: el evento se libera del cursor para no bloquearlo
+        private void drop(IngestionEvent event) {
+            dropped.increment();
+            log.warn("⚠ Carril {} lleno, evento descartado: {} ({})", name, event.partition().getId(), event.key());
+            commit(List.of(event));
+        }
+
+        private void drainLoop() {
+            while (running) {
+                try {
+                    refillFromSpill();
+                    List<IngestionEvent> batch = nextBatch();
+                    if (!batch.isEmpty()) process(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Error en carril de ingesta: {}", e.getMessage());
+                }
+            }
+        }
+
+        private List<IngestionEvent> nextBatch() throws InterruptedException {
+            List<Queued> taken = new ArrayList<>(maxBatchSize);
+            Queued first = queue.poll(1, TimeUnit.SECONDS);
+            if (first == null) return List.of();
+            taken.add(first);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            while (taken.size() < maxBatchSize) {
+                if (queue.drainTo(taken, maxBatchSize - taken.size()) > 0) continue;
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+                Queued next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) break;
+                taken.add(next);
+            }
+
+            long now = System.nanoTime();
+            List<IngestionEvent> batch = new ArrayList<>(taken.size());
+            for (Queued queued : taken) {
+                waitTimer.record(now - queued.enqueuedAt(), TimeUnit.NANOSECONDS);
+                batch.add(queued.event());
+            }
+            return batch;
+        }
+
+        private void process(List<IngestionEvent> batch) throws InterruptedException {
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                try {
+                    batchProcessor.processBatch(batch);
+                } catch (Exception e) {
+                    log.warn("⚠ Lote de {} eventos falló (intento {}/{}): {}", batch.size(), attempt, maxAttempts, e.getMessage());
+                    if (attempt < maxAttempts) Thread.sleep(retryBackoffMs * attempt);
+                    continue;
+                }
+                commit(batch);
+                return;
+            }
+
+            // Se aísla el evento problemático procesando uno por uno
+            for (IngestionEvent event : batch) {
+                try {
+                    batchProcessor.processBatch(List.of(event));
+                } catch (Exception e) {
+                    log.error("Error procesando {} ({}): {}", event.partition().getId(), event.key(), e.getMessage());
+                    if (!deadLetter(event, e)) return;
+                }
+                commit(List.of(event));
+            }
+        }
+
+        // El cursor solo pasa un evento fallido cuando quedó guardado en dead-letter.
+        // Si ni eso es posible (BD caída) el carril espera; al apagar, el evento se relee desde el cursor.
+        private boolean deadLetter(IngestionEvent event, Exception error) throws InterruptedException {
+            long backoff = retryBackoffMs;
+            while (running) {
+                try {
+                    deadLetterService.record(event, error);
+                    return true;
+                } catch (Exception e) {
+                    log.error("Error guardando dead-letter {} ({}): {}", event.partition().getId(), event.key(), e.getMessage());
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, 30_000);
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Con varios carriles los lotes confirman fuera de orden. El cursor de una partición solo puede avanzar
+ * hasta la mayor clave confirmada que no tenga por debajo ninguna clave aún en vuelo.
+ */
+@Component
+public class IngestionCommitTracker {
+
+    private final Map<LogPartition, NavigableSet<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<LogPartition, NavigableSet<String>> completed = new ConcurrentHashMap<>();
+
+    public void begin(LogPartition partition, String key) {
+        inFlight.computeIfAbsent(partition, p -> new ConcurrentSkipListSet<>()).add(key);
+    }
+
+    // El evento no llegó a encolarse: se retira para que no frene el cursor. Quien lo envió lo reintenta, y las
+    // claves posteriores de la partición no se envían antes de ese reintento
+    public void cancel(LogPartition partition, String key) {
+        NavigableSet<String> pending = inFlight.get(partition);
+        if (pending != null) pending.remove(key);
+    }
+
+    /**
+     * Marca las claves como terminadas y retorna la nueva posición segura del cursor, o null si no avanzó.
+     */
+    public synchronized String complete(LogPartition partition, Collection<String> keys) {
+        NavigableSet<String> pending = inFlight.computeIfAbsent(partition, p -> new ConcurrentSkipListSet<>());
+        NavigableSet<String> done = completed.computeIfAbsent(partition, p -> new ConcurrentSkipListSet<>());
+        pending.removeAll(keys);
+        done.addAll(keys);
+
+        NavigableSet<String> safe = pending.isEmpty() ? done : done.headSet(pending.first(), false);
+        if (safe.isEmpty()) return null;
+
+        String safeKey = safe.last();
+        safe.clear();
+        return safeKey;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.values().stream().mapToInt(NavigableSet::size).sum();
+    }
+}
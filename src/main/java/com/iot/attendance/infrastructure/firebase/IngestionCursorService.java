@@ -0,0 +1,64 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.infrastructure.persistence.entity.IngestionCursorEntity;
+import com.iot.attendance.infrastructure.persistence.repository.IngestedEventRepository;
+import com.iot.attendance.infrastructure.persistence.repository.IngestionCursorRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionCursorService {
+
+    @Value("${firebase.ingestion.idempotency.retention-hours:72}")
+    private long retentionHours;
+
+    private final IngestionCursorRepository cursorRepository;
+    private final IngestedEventRepository ingestedEventRepository;
+
+    // Cache del high-water mark por partición; la fuente de verdad es la tabla ingestion_cursors (clave = ruta)
+    private final Map<LogPartition, String> lastKeys = new ConcurrentHashMap<>();
+
+    public Optional<String> getLastKey(LogPartition partition) {
+        String cached = lastKeys.get(partition);
+        if (cached != null) return Optional.of(cached);
+
+        Optional<String> stored = cursorRepository.findById(partition.path()).map(IngestionCursorEntity::getLastKey);
+        stored.ifPresent(key -> lastKeys.put(partition, key));
+        return stored;
+    }
+
+    // Fuerza a releer desde la BD; otra réplica pudo haber movido los cursores
+    public void invalidate() {
+        lastKeys.clear();
+    }
+
+    public void advance(LogPartition partition, String key) {
+        String current = getLastKey(partition).orElse(null);
+        if (current != null && key.compareTo(current) <= 0) return;
+
+        cursorRepository.advance(partition.path(), key);
+        lastKeys.merge(partition, key, (existing, candidate) -> candidate.compareTo(existing) > 0 ? candidate : existing);
+        log.debug("Cursor {} → {}", partition.getId(), key);
+    }
+
+    // ingested_events solo hace falta por encima del cursor; lo de abajo se conserva retention-hours para replays de exports
+    @Scheduled(cron = "${firebase.ingestion.idempotency.prune-cron:0 45 3 * * *}")
+    public void pruneIngestedKeys() {
+        try {
+            int deleted = ingestedEventRepository.pruneCommitted(LocalDateTime.now().minusHours(retentionHours));
+            if (deleted > 0) log.info("✓ {} claves de ingesta antiguas eliminadas", deleted);
+        } catch (Exception e) {
+            log.error("Error podando claves de ingesta: {}", e.getMessage());
+        }
+    }
+}
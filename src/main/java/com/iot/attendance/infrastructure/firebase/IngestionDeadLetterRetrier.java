@@ -0,0 +1,28 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.application.service.IngestionDeadLetterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionDeadLetterRetrier {
+
+    private final IngestionDeadLetterService deadLetterService;
+    private final IngestionLeaderElection leaderElection;
+
+    // El backoff por entrada lo decide next_attempt_at; aquí solo se revisa qué venció
+    @Scheduled(fixedDelayString = "${firebase.ingestion.dead-letter.retry-interval-ms:15000}")
+    public void retryDue() {
+        // Solo una réplica (la coordinadora) reintenta, para no reprocesar el mismo evento dos veces
+        if (!leaderElection.isCoordinator()) return;
+        try {
+            deadLetterService.retryDue();
+        } catch (Exception e) {
+            log.error("Error reintentando dead-letters: {}", e.getMessage());
+        }
+    }
+}
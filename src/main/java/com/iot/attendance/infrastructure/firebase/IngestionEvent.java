@@ -0,0 +1,12 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import java.time.LocalDateTime;
+
+// deviceEvent es null cuando el mensaje no corresponde a ningún formato conocido
+public record IngestionEvent(LogPartition partition, String key, String message, DeviceEvent deviceEvent,
+                             LocalDateTime receivedAt) {
+
+    public FirebaseLogNode node() {
+        return partition.node();
+    }
+}
@@ -0,0 +1,454 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local de solo-anexado para los eventos recibidos de Firebase.
+ * Recibir un evento es solo escribirlo en un segmento mapeado en memoria; sync() fuerza a disco todo lo
+ * escrito hasta el momento, de modo que una página completa de Firebase cuesta un solo fsync.
+ * <p>
+ * Los carriles de ingesta consumen del journal con poll(), que solo entrega registros ya sincronizados.
+ * La posición de lectura (en memoria) es independiente de la de confirmación: al confirmarse en la BD los
+ * eventos se descuentan de su segmento, y un segmento cerrado sin eventos pendientes se elimina. Al arrancar
+ * la lectura empieza por los segmentos anteriores, saltando lo que ya está por debajo del cursor confirmado.
+ * <p>
+ * Formato de registro: [int largo][int crc32][short largo sede][sede][byte nodo][long recibido(ms)][short largo clave][clave]
+ * [int largo msg][msg].
+ * Un largo 0 marca el final de los datos del segmento.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    @Value("${firebase.ingestion.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${firebase.ingestion.journal.directory:data/journal}")
+    private Path directory;
+
+    @Value("${firebase.ingestion.journal.segment-size-bytes:16777216}")
+    private int segmentSizeBytes;
+
+    private final IngestionPartitions partitions;
+    private final CRC32 crc = new CRC32();
+    private final CRC32 readCrc = new CRC32();
+
+    // Segmento de cada evento aún no confirmado ("sede/nodo:clave" -> segmento)
+    private final Map<String, Segment> pendingSegments = new ConcurrentHashMap<>();
+    // Mayor clave escrita por partición: desde aquí se sigue leyendo Firebase aunque la BD vaya atrasada
+    private final Map<LogPartition, String> journaledKeys = new ConcurrentHashMap<>();
+    // Segmentos que aún pueden tener registros por leer o por confirmar, por id
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final List<Segment> recovered = new ArrayList<>();
+    // Cursor confirmado al arrancar: lo que quedó por debajo en los segmentos anteriores no se vuelve a entregar
+    private final Map<LogPartition, String> recoveryFloor = new ConcurrentHashMap<>();
+    private final AtomicInteger unread = new AtomicInteger();
+
+    private Segment active;
+    private long nextSegmentId;
+    private long firstLiveSegmentId;
+    private final Object syncMonitor = new Object();
+
+    // Posición de lectura: solo la usa el hilo que llama a poll()
+    private Segment readSegment;
+    private int readPosition;
+    private volatile boolean recoveryDone;
+    private final Object readMonitor = new Object();
+    private long readSignals;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) return;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(this::isSegment).sorted().forEach(path -> {
+                Segment segment = Segment.open(path, parseId(path));
+                // Un segmento anterior es legible hasta su último registro íntegro
+                segment.durableEnd.set(segment.validEnd(crc));
+                segment.sealed = true;
+                segment.close();
+                recovered.add(segment);
+                segments.put(segment.id, segment);
+            });
+        }
+        nextSegmentId = recovered.isEmpty() ? 1 : recovered.get(recovered.size() - 1).id + 1;
+        firstLiveSegmentId = nextSegmentId;
+        active = Segment.create(segmentPath(nextSegmentId), nextSegmentId++, segmentSizeBytes);
+        segments.put(active.id, active);
+        log.info("✓ Journal de ingesta en {} ({} segmentos por recuperar)", directory.toAbsolutePath(), recovered.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cuenta como pendientes los eventos de segmentos anteriores al arranque que siguen por encima del cursor
+     * confirmado y los entrega al consumidor en orden de escritura (para deduplicarlos). Hasta que se llama,
+     * poll() no entrega nada: la lectura de esos segmentos necesita el cursor.
+     */
+    public synchronized int recover(Map<LogPartition, String> committedKeys, Consumer<IngestionEvent> consumer) {
+        if (!enabled) return 0;
+
+        recoveryFloor.putAll(committedKeys);
+        int replayed = 0;
+        for (Segment segment : recovered) {
+            int position = 0;
+            while (position < segment.durableEnd.get()) {
+                Record record = segment.read(position, crc, partitions);
+                position = record.next();
+                IngestionEvent event = record.event();
+                if (event == null || belowFloor(event)) continue;
+
+                segment.pending.incrementAndGet();
+                pendingSegments.put(pendingKey(event.partition(), event.key()), segment);
+                journaledKeys.merge(event.partition(), event.key(), this::max);
+                unread.incrementAndGet();
+                consumer.accept(event);
+                replayed++;
+            }
+            deleteIfDrained(segment);
+        }
+        recovered.clear();
+        recoveryDone = true;
+        signalReader();
+        if (replayed > 0) log.info("✓ {} eventos recuperados del journal", replayed);
+        return replayed;
+    }
+
+    public synchronized void append(IngestionEvent event) {
+        if (!enabled) return;
+
+        byte[] site = event.partition().site().getBytes(StandardCharsets.UTF_8);
+        byte[] key = event.key().getBytes(StandardCharsets.UTF_8);
+        byte[] message = event.message() != null ? event.message().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int bodyLength = 2 + site.length + 1 + 8 + 2 + key.length + 4 + message.length;
+        int recordLength = HEADER_BYTES + bodyLength;
+
+        // Se deja espacio para el marcador de fin (int 0)
+        if (active.buffer.remaining() < recordLength + 4) roll(recordLength + 4);
+
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.putShort((short) site.length);
+        buffer.put(site);
+        buffer.put((byte) event.node().ordinal());
+        buffer.putLong(event.receivedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+        buffer.putShort((short) key.length);
+        buffer.put(key);
+        buffer.putInt(message.length);
+        buffer.put(message);
+
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_BYTES, bodyLength));
+        buffer.putInt(start, bodyLength);
+        buffer.putInt(start + 4, (int) crc.getValue());
+
+        active.pending.incrementAndGet();
+        pendingSegments.put(pendingKey(event.partition(), event.key()), active);
+        journaledKeys.merge(event.partition(), event.key(), this::max);
+        unread.incrementAndGet();
+    }
+
+    /**
+     * Fuerza a disco lo escrito hasta ahora y lo deja visible para poll(). Llamadas concurrentes se agrupan:
+     * quien llega mientras otro hilo sincroniza queda cubierto por ese mismo fsync.
+     */
+    public void sync() {
+        if (!enabled) return;
+
+        Segment segment;
+        int end;
+        synchronized (this) {
+            segment = active;
+            end = active.buffer.position();
+        }
+        if (segment.durableEnd.get() >= end) return;
+
+        synchronized (syncMonitor) {
+            if (segment.durableEnd.get() >= end) return;
+            segment.buffer.force();
+            segment.durableEnd.accumulateAndGet(end, Math::max);
+        }
+        signalReader();
+    }
+
+    /**
+     * Entrega hasta maxEvents registros ya sincronizados a partir de la posición de lectura, esperando hasta
+     * timeoutMs si no hay ninguno. deviceEvent viene en null: el mensaje se decodifica al encolar.
+     * Un solo hilo debe consumir.
+     */
+    public List<IngestionEvent> poll(int maxEvents, long timeoutMs) throws InterruptedException {
+        List<IngestionEvent> events = new ArrayList<>();
+        if (!enabled) return events;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            long seen;
+            synchronized (readMonitor) {
+                seen = readSignals;
+            }
+            if (recoveryDone) readDurable(events, maxEvents);
+            if (!events.isEmpty()) return events;
+
+            synchronized (readMonitor) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return events;
+                if (readSignals == seen) TimeUnit.NANOSECONDS.timedWait(readMonitor, remaining);
+            }
+        }
+    }
+
+    // Llamado tras confirmar en la BD; cuando un segmento cerrado queda sin pendientes se elimina
+    public void markCommitted(Collection<IngestionEvent> events) {
+        if (!enabled) return;
+
+        for (IngestionEvent event : events) {
+            Segment segment = pendingSegments.remove(pendingKey(event.partition(), event.key()));
+            if (segment != null && segment.pending.decrementAndGet() == 0) deleteIfDrained(segment);
+        }
+    }
+
+    public Optional<String> getJournaledKey(LogPartition partition) {
+        return Optional.ofNullable(journaledKeys.get(partition));
+    }
+
+    public int getPendingCount() {
+        return pendingSegments.size();
+    }
+
+    // Escritos (o recuperados) que los carriles aún no tomaron
+    public int getUnreadCount() {
+        return unread.get();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!enabled || active == null) return;
+        active.buffer.force();
+        active.close();
+    }
+
+    // El segmento anterior queda sellado y completo en disco antes de abrir el siguiente
+    private void roll(int minimumBytes) {
+        Segment previous = active;
+        previous.buffer.force();
+        previous.durableEnd.accumulateAndGet(previous.buffer.position(), Math::max);
+
+        active = Segment.create(segmentPath(nextSegmentId), nextSegmentId++, Math.max(segmentSizeBytes, minimumBytes));
+        segments.put(active.id, active);
+        // Sellado después de registrar el siguiente: el lector que lo ve sellado ya encuentra dónde seguir
+        previous.sealed = true;
+        previous.close();
+        signalReader();
+        deleteIfDrained(previous);
+    }
+
+    private void readDurable(List<IngestionEvent> events, int maxEvents) {
+        while (events.size() < maxEvents) {
+            if (readSegment == null) {
+                Map.Entry<Long, Segment> first = segments.firstEntry();
+                if (first == null) return;
+                readSegment = first.getValue();
+                readPosition = 0;
+            }
+            // sealed se lee antes que durableEnd: si ya está sellado, el fin leído es el definitivo
+            boolean sealed = readSegment.sealed;
+            int end = readSegment.durableEnd.get();
+            if (readPosition < end) {
+                Record record = readSegment.read(readPosition, readCrc, partitions);
+                readPosition = record.next();
+                IngestionEvent event = record.event();
+                if (event == null || (readSegment.id < firstLiveSegmentId && belowFloor(event))) continue;
+                unread.decrementAndGet();
+                events.add(event);
+            } else if (sealed) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.id);
+                if (next == null) return;
+                readSegment = next.getValue();
+                readPosition = 0;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void signalReader() {
+        synchronized (readMonitor) {
+            readSignals++;
+            readMonitor.notifyAll();
+        }
+    }
+
+    private boolean belowFloor(IngestionEvent event) {
+        String committed = recoveryFloor.get(event.partition());
+        return committed != null && event.key().compareTo(committed) <= 0;
+    }
+
+    private void deleteIfDrained(Segment segment) {
+        if (!segment.sealed || segment.pending.get() > 0) return;
+        segments.remove(segment.id);
+        try {
+            Files.deleteIfExists(segment.path);
+            log.debug("Segmento de journal truncado: {}", segment.path.getFileName());
+        } catch (IOException e) {
+            log.warn("⚠ No se pudo eliminar segmento {}: {}", segment.path.getFileName(), e.getMessage());
+        }
+    }
+
+    private boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private long parseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private String pendingKey(LogPartition partition, String key) {
+        return partition.getId() + ":" + key;
+    }
+
+    private String max(String a, String b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    // event es null si el registro no es válido o su sede ya no está configurada; next es donde sigue la lectura
+    private record Record(IngestionEvent event, int next) {
+    }
+
+    private static class Segment {
+
+        private final Path path;
+        private final long id;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger pending = new AtomicInteger();
+        // Hasta dónde el segmento está en disco y puede leerse
+        private final AtomicInteger durableEnd = new AtomicInteger();
+        private volatile boolean sealed;
+
+        private Segment(Path path, long id, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.id = id;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long id, int size) {
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                return new Segment(path, id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo crear segmento de journal " + path, e);
+            }
+        }
+
+        static Segment open(Path path, long id) {
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                return new Segment(path, id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo abrir segmento de journal " + path, e);
+            }
+        }
+
+        // Fin del último registro íntegro: se detiene en el marcador de fin o en el primer registro incompleto
+        // (escritura cortada por un crash) o con CRC inválido
+        int validEnd(CRC32 crc) {
+            int position = 0;
+            while (position + HEADER_BYTES <= buffer.limit()) {
+                int bodyLength = buffer.getInt(position);
+                if (bodyLength <= 0 || position + HEADER_BYTES + bodyLength > buffer.limit()) break;
+
+                crc.reset();
+                crc.update(buffer.slice(position + HEADER_BYTES, bodyLength));
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    log.warn("⚠ Registro corrupto en {} (offset {}), se descarta el resto del segmento", path.getFileName(), position);
+                    break;
+                }
+                position += HEADER_BYTES + bodyLength;
+            }
+            return position;
+        }
+
+        Record read(int position, CRC32 crc, IngestionPartitions partitions) {
+            int bodyLength = buffer.getInt(position);
+            int next = position + HEADER_BYTES + bodyLength;
+            crc.reset();
+            crc.update(buffer.slice(position + HEADER_BYTES, bodyLength));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("⚠ Registro corrupto en {} (offset {}), se omite", path.getFileName(), position);
+                return new Record(null, next);
+            }
+
+            int p = position + HEADER_BYTES;
+            byte[] site = new byte[buffer.getShort(p)];
+            buffer.get(p + 2, site);
+            p += 2 + site.length;
+            FirebaseLogNode node = FirebaseLogNode.values()[buffer.get(p)];
+            LocalDateTime receivedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong(p + 1)), ZoneOffset.UTC);
+            int keyLength = buffer.getShort(p + 9);
+            byte[] key = new byte[keyLength];
+            buffer.get(p + 11, key);
+            int messageLength = buffer.getInt(p + 11 + keyLength);
+            byte[] message = new byte[messageLength];
+            buffer.get(p + 15 + keyLength, message);
+
+            String siteId = new String(site, StandardCharsets.UTF_8);
+            Optional<LogPartition> partition = partitions.find(siteId, node);
+            if (partition.isEmpty()) {
+                log.warn("⚠ Sede {} ya no está configurada, se descarta evento del journal", siteId);
+                return new Record(null, next);
+            }
+            return new Record(new IngestionEvent(partition.get(), new String(key, StandardCharsets.UTF_8),
+                    new String(message, StandardCharsets.UTF_8), null, receivedAt), next);
+        }
+
+        // El mapeo sigue siendo legible después de cerrar el canal
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
\ No newline at end of file
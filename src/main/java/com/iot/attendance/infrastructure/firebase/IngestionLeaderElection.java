@@ -0,0 +1,246 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.infrastructure.persistence.repository.IngestionInstanceRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reparto de sedes entre réplicas de la API mediante advisory locks de PostgreSQL (un lock por sede).
+ * Los locks son de sesión: se toman en una conexión dedicada que la réplica mantiene abierta, abierta aparte
+ * del pool de Hikari para no restarle una conexión a la API. Si el proceso muere o pierde la conexión,
+ * PostgreSQL libera sus locks y otra réplica los toma en el siguiente intento.
+ * <p>
+ * Cada réplica publica un heartbeat en ingestion_instances y aspira a ceil(sedes / réplicas vivas) sedes:
+ * si tiene de más suelta una por ronda, si tiene de menos intenta tomar las libres. Así, al sumar réplicas
+ * las sedes se redistribuyen solas. Todas las réplicas siguen atendiendo la API.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionLeaderElection {
+
+    @Value("${firebase.ingestion.leader-election.enabled:true}")
+    private boolean enabled;
+
+    @Value("${firebase.ingestion.leader-election.lock-id:727001}")
+    private int lockId;
+
+    @Value("${firebase.ingestion.leader-election.renew-interval-ms:2000}")
+    private long renewIntervalMs;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final IngestionCursorService cursorService;
+    private final IngestionPartitions partitions;
+    private final IngestionInstanceRepository instanceRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = resolveInstanceId();
+    private final Set<String> ownedSites = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lockKeys = new HashMap<>();
+    private Connection lockConnection;
+
+    @PostConstruct
+    public void init() {
+        Map<Long, String> bySite = new HashMap<>();
+        for (String site : partitions.getSites()) {
+            long key = lockKey(lockId, site);
+            String other = bySite.putIfAbsent(key, site);
+            if (other != null) {
+                throw new IllegalStateException("Las sedes " + other + " y " + site + " comparten advisory lock " + key);
+            }
+            lockKeys.put(site, key);
+        }
+        for (String site : partitions.getSites()) {
+            Gauge.builder("firebase.ingestion.leader", ownedSites, owned -> owned.contains(site) ? 1 : 0)
+                    .tag("site", site).register(meterRegistry);
+        }
+        if (!enabled) {
+            ownedSites.addAll(partitions.getSites());
+            log.info("Elección de líder deshabilitada: esta instancia ingiere todas las sedes");
+        }
+    }
+
+    public boolean isLeader(String site) {
+        return ownedSites.contains(site);
+    }
+
+    // La dueña de la primera sede se encarga de las tareas globales (p. ej. reintentos de dead-letter)
+    public boolean isCoordinator() {
+        List<String> sites = partitions.getSites();
+        return !sites.isEmpty() && ownedSites.contains(sites.get(0));
+    }
+
+    public List<String> getOwnedSites() {
+        return partitions.getSites().stream().filter(ownedSites::contains).toList();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Scheduled(fixedDelayString = "${firebase.ingestion.leader-election.renew-interval-ms:2000}")
+    public synchronized void renew() {
+        if (!enabled) return;
+
+        if (!ownedSites.isEmpty() && !isConnectionAlive()) {
+            // Sin sesión no hay locks: otras réplicas pueden haber tomado ya estas sedes
+            log.warn("⚠ Conexión de los locks de ingesta perdida, dejando de ingerir {} sedes", ownedSites.size());
+            closeConnection();
+            new ArrayList<>(ownedSites).forEach(site -> setOwned(site, false));
+        }
+
+        try {
+            if (lockConnection == null || !isConnectionAlive()) {
+                closeConnection();
+                lockConnection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                        dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+                lockConnection.setAutoCommit(true);
+            }
+            rebalance(targetSites());
+        } catch (Exception e) {
+            log.debug("No se pudo renovar el reparto de sedes: {}", e.getMessage());
+            if (ownedSites.isEmpty()) closeConnection();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void release() {
+        if (lockConnection != null) {
+            for (String site : new ArrayList<>(ownedSites)) {
+                try {
+                    unlock(site);
+                } catch (SQLException ignored) {
+                    // Al cerrar la sesión PostgreSQL libera los locks de todos modos
+                }
+            }
+        }
+        closeConnection();
+        if (enabled) {
+            ownedSites.clear();
+            try {
+                instanceRepository.deleteById(instanceId);
+            } catch (Exception ignored) {
+                // El heartbeat vencido deja de contarse solo
+            }
+        }
+    }
+
+    private int targetSites() {
+        LocalDateTime now = LocalDateTime.now();
+        instanceRepository.heartbeat(instanceId, now);
+        LocalDateTime expiry = now.minusNanos(renewIntervalMs * 3 * 1_000_000);
+        instanceRepository.deleteByHeartbeatAtBefore(expiry.minusMinutes(10));
+
+        long live = Math.max(instanceRepository.countByHeartbeatAtAfter(expiry), 1);
+        return (int) Math.ceil(partitions.getSites().size() / (double) live);
+    }
+
+    private void rebalance(int target) throws SQLException {
+        List<String> owned = getOwnedSites();
+        if (owned.size() > target) {
+            // De a una por ronda, para dar tiempo a que las réplicas nuevas tomen la sede liberada
+            String site = owned.get(owned.size() - 1);
+            unlock(site);
+            setOwned(site, false);
+            return;
+        }
+
+        for (String site : candidateOrder()) {
+            if (ownedSites.size() >= target) break;
+            if (ownedSites.contains(site) || !tryLock(site)) continue;
+            // Otra réplica pudo haber avanzado los cursores de la sede mientras no era nuestra
+            cursorService.invalidate();
+            setOwned(site, true);
+        }
+    }
+
+    // Cada réplica recorre las sedes desde un punto distinto para no competir todas por la misma
+    private List<String> candidateOrder() {
+        List<String> sites = new ArrayList<>(partitions.getSites());
+        Collections.rotate(sites, Math.floorMod(instanceId.hashCode(), Math.max(sites.size(), 1)));
+        return sites;
+    }
+
+    private boolean tryLock(String site) throws SQLException {
+        try (PreparedStatement statement = lockConnection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, lockKeys.get(site));
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(String site) throws SQLException {
+        try (PreparedStatement statement = lockConnection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, lockKeys.get(site));
+            statement.execute();
+        }
+    }
+
+    private boolean isConnectionAlive() {
+        try {
+            return lockConnection != null && lockConnection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void setOwned(String site, boolean owned) {
+        boolean changed = owned ? ownedSites.add(site) : ownedSites.remove(site);
+        if (!changed) return;
+        log.info(owned ? "✓ Instancia {} ingiere ahora la sede {}" : ">> Instancia {} dejó de ingerir la sede {}", instanceId, site);
+        eventPublisher.publishEvent(new IngestionLeadershipEvent(this, site, owned));
+    }
+
+    private void closeConnection() {
+        if (lockConnection == null) return;
+        try {
+            lockConnection.close();
+        } catch (SQLException ignored) {
+        }
+        lockConnection = null;
+    }
+
+    // Clave de 64 bits estable entre réplicas y reinicios: prefijo del SHA-256 de "lock-id:sede".
+    // site.hashCode() (32 bits) podía repetirse entre sedes y dejar dos sedes bajo el mismo lock
+    private static long lockKey(int lockId, String site) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest((lockId + ":" + site).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String resolveInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        } catch (Exception e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
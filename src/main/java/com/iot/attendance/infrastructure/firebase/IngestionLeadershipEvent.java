@@ -0,0 +1,17 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class IngestionLeadershipEvent extends ApplicationEvent {
+
+    private final String site;
+    private final boolean leader;
+
+    public IngestionLeadershipEvent(Object source, String site, boolean leader) {
+        super(source);
+        this.site = site;
+        this.leader = leader;
+    }
+}
@@ -0,0 +1,63 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Sedes configuradas y sus particiones de ingesta. La sede "default" lee /logs/*; cualquier otra lee
+ * &lt;sites-root&gt;/&lt;sede&gt;/logs/*, de modo que agregar un edificio es agregarlo a firebase.ingestion.sites.
+ */
+@Component
+@Slf4j
+public class IngestionPartitions {
+
+    @Value("${firebase.ingestion.sites:default}")
+    private List<String> sites;
+
+    @Value("${firebase.ingestion.sites-root:sites}")
+    private String sitesRoot;
+
+    private final Map<String, Map<FirebaseLogNode, LogPartition>> partitionsBySite = new LinkedHashMap<>();
+    private List<LogPartition> partitions;
+
+    @PostConstruct
+    public void init() {
+        for (String site : sites) {
+            String id = site.trim();
+            if (id.isEmpty() || partitionsBySite.containsKey(id)) continue;
+
+            Map<FirebaseLogNode, LogPartition> nodes = new EnumMap<>(FirebaseLogNode.class);
+            for (FirebaseLogNode node : FirebaseLogNode.values()) {
+                String path = LogPartition.DEFAULT_SITE.equals(id) ? node.getPath() : sitesRoot + "/" + id + "/" + node.getPath();
+                nodes.put(node, new LogPartition(id, node, path));
+            }
+            partitionsBySite.put(id, nodes);
+        }
+        partitions = partitionsBySite.values().stream().flatMap(m -> m.values().stream()).toList();
+        log.info("✓ Ingesta configurada para {} sedes ({} particiones): {}", partitionsBySite.size(), partitions.size(),
+                partitionsBySite.keySet());
+    }
+
+    public List<String> getSites() {
+        return List.copyOf(partitionsBySite.keySet());
+    }
+
+    public List<LogPartition> getPartitions() {
+        return partitions;
+    }
+
+    public List<LogPartition> getPartitions(String site) {
+        Map<FirebaseLogNode, LogPartition> nodes = partitionsBySite.get(site);
+        return nodes != null ? List.copyOf(nodes.values()) : List.of();
+    }
+
+    // Vacío si la sede ya no está configurada (p. ej. un evento viejo del journal o de dead-letter)
+    public Optional<LogPartition> find(String site, FirebaseLogNode node) {
+        Map<FirebaseLogNode, LogPartition> nodes = partitionsBySite.get(site);
+        return nodes != null ? Optional.of(nodes.get(node)) : Optional.empty();
+    }
+}
@@ -0,0 +1,105 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cola FIFO en disco para el desborde de un carril (política SPILL). Se escribe al final y se lee desde el
+ * inicio; cuando se vacía, el archivo se trunca. No es thread-safe: el carril la usa bajo su propio lock.
+ */
+class IngestionSpillFile {
+
+    private final Path path;
+    private final IngestionPartitions partitions;
+    private FileChannel channel;
+    private long readPosition;
+    private long writePosition;
+    private int pending;
+
+    IngestionSpillFile(Path path, IngestionPartitions partitions) throws IOException {
+        this.path = path;
+        this.partitions = partitions;
+        Files.createDirectories(path.getParent());
+        // Un desborde de una ejecución anterior sigue en el journal o en Firebase
+        Files.deleteIfExists(path);
+    }
+
+    void append(IngestionEvent event) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        byte[] site = event.partition().site().getBytes(StandardCharsets.UTF_8);
+        byte[] key = event.key().getBytes(StandardCharsets.UTF_8);
+        byte[] message = event.message() != null ? event.message().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 2 + site.length + 1 + 8 + 2 + key.length + 4 + message.length);
+        buffer.putInt(buffer.capacity() - 4);
+        buffer.putShort((short) site.length);
+        buffer.put(site);
+        buffer.put((byte) event.node().ordinal());
+        buffer.putLong(event.receivedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+        buffer.putShort((short) key.length);
+        buffer.put(key);
+        buffer.putInt(message.length);
+        buffer.put(message);
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            writePosition += channel.write(buffer, writePosition);
+        }
+        pending++;
+    }
+
+    // deviceEvent no se persiste: el carril lo vuelve a decodificar al leer
+    List<IngestionEvent> read(int max) throws IOException {
+        List<IngestionEvent> events = new ArrayList<>(Math.min(max, pending));
+        FirebaseLogNode[] nodes = FirebaseLogNode.values();
+        ByteBuffer length = ByteBuffer.allocate(4);
+
+        while (events.size() < max && pending > 0) {
+            length.clear();
+            channel.read(length, readPosition);
+            ByteBuffer body = ByteBuffer.allocate(length.flip().getInt());
+            channel.read(body, readPosition + 4);
+            body.flip();
+
+            byte[] site = new byte[body.getShort()];
+            body.get(site);
+            FirebaseLogNode node = nodes[body.get()];
+            LocalDateTime receivedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(body.getLong()), ZoneOffset.UTC);
+            byte[] key = new byte[body.getShort()];
+            body.get(key);
+            byte[] message = new byte[body.getInt()];
+            body.get(message);
+
+            readPosition += 4 + body.capacity();
+            pending--;
+
+            // Las sedes no cambian en caliente: lo que se desbordó en esta ejecución sigue configurado
+            LogPartition partition = partitions.find(new String(site, StandardCharsets.UTF_8), node).orElseThrow();
+            events.add(new IngestionEvent(partition, new String(key, StandardCharsets.UTF_8),
+                    new String(message, StandardCharsets.UTF_8), null, receivedAt));
+        }
+
+        if (pending == 0) {
+            channel.truncate(0);
+            readPosition = 0;
+            writePosition = 0;
+        }
+        return events;
+    }
+
+    int getPending() {
+        return pending;
+    }
+}
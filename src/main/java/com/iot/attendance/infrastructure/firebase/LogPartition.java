@@ -0,0 +1,18 @@
+package com.iot.attendance.infrastructure.firebase;
+
+/**
+ * Unidad de ingesta: un nodo de logs de una sede. Cada partición tiene su propio cursor, estado de
+ * deduplicación y métricas. La sede "default" conserva la ruta histórica /logs/&lt;nodo&gt;.
+ */
+public record LogPartition(String site, FirebaseLogNode node, String path) {
+
+    public static final String DEFAULT_SITE = "default";
+
+    public String getId() {
+        return site + "/" + node.getNodeName();
+    }
+
+    public boolean isDefaultSite() {
+        return DEFAULT_SITE.equals(site);
+    }
+}
@@ -0,0 +1,108 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de push keys ya procesadas por partición (sede + nodo), con memoria acotada.
+ * Cada partición usa un anillo de capacidad fija (se desaloja la clave más antigua) más un watermark:
+ * como las push keys de Firebase son crecientes en el tiempo, toda clave menor o igual al watermark
+ * se rechaza con una sola comparación, sin importar si sigue en el anillo.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProcessedKeyDeduplicator {
+
+    @Value("${firebase.ingestion.dedup.capacity:4096}")
+    private int capacity;
+
+    private final MeterRegistry meterRegistry;
+    private final IngestionPartitions partitions;
+
+    private final Map<LogPartition, KeyWindow> windows = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (LogPartition partition : partitions.getPartitions()) {
+            KeyWindow window = new KeyWindow(capacity);
+            windows.put(partition, window);
+            registerMetrics(partition, window);
+        }
+    }
+
+    public boolean isDuplicate(LogPartition partition, String key) {
+        KeyWindow window = windows.get(partition);
+        String watermark = window.watermark.get();
+        if (watermark != null && key.compareTo(watermark) <= 0) {
+            window.staleRejections.increment();
+            return true;
+        }
+        if (window.keys.contains(key)) {
+            window.hits.increment();
+            return true;
+        }
+        window.misses.increment();
+        return false;
+    }
+
+    public void markProcessed(LogPartition partition, String key) {
+        KeyWindow window = windows.get(partition);
+        if (!window.keys.add(key)) return;
+
+        int slot = (int) (window.sequence.getAndIncrement() % window.ring.length());
+        String evicted = window.ring.getAndSet(slot, key);
+        if (evicted != null) {
+            window.keys.remove(evicted);
+            window.evictions.increment();
+        }
+    }
+
+    public void advanceWatermark(LogPartition partition, String key) {
+        windows.get(partition).watermark.accumulateAndGet(key,
+                (current, candidate) -> current == null || candidate.compareTo(current) > 0 ? candidate : current);
+    }
+
+    private void registerMetrics(LogPartition partition, KeyWindow window) {
+        Tags tags = Tags.of("site", partition.site(), "node", partition.node().getNodeName());
+        Gauge.builder("firebase.ingestion.dedup.size", window.keys, Set::size)
+                .tags(tags).register(meterRegistry);
+        FunctionCounter.builder("firebase.ingestion.dedup.hits", window.hits, LongAdder::sum)
+                .tags(tags).register(meterRegistry);
+        FunctionCounter.builder("firebase.ingestion.dedup.misses", window.misses, LongAdder::sum)
+                .tags(tags).register(meterRegistry);
+        FunctionCounter.builder("firebase.ingestion.dedup.evictions", window.evictions, LongAdder::sum)
+                .tags(tags).register(meterRegistry);
+        FunctionCounter.builder("firebase.ingestion.dedup.stale", window.staleRejections, LongAdder::sum)
+                .tags(tags).register(meterRegistry);
+    }
+
+    private static class KeyWindow {
+        private final AtomicReferenceArray<String> ring;
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicReference<String> watermark = new AtomicReference<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder staleRejections = new LongAdder();
+
+        KeyWindow(int capacity) {
+            this.ring = new AtomicReferenceArray<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Utilidades sobre push keys de Firebase: los 8 primeros caracteres codifican en base 64 (alfabeto
+ * PUSH_CHARS) el timestamp en milisegundos en que el dispositivo creó la entrada.
+ * next() genera claves del lado de la API con el mismo algoritmo que los SDK de Firebase.
+ */
+public final class PushKeys {
+
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int[] lastRandomChars = new int[12];
+    private static long lastTimestamp;
+
+    private PushKeys() {
+    }
+
+    /**
+     * Nueva push key estrictamente mayor que la anterior generada en este proceso: dentro del mismo
+     * milisegundo (o si el reloj retrocede) se incrementa la parte aleatoria en lugar de sortearla.
+     */
+    public static synchronized String next() {
+        long now = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (now == lastTimestamp) {
+            int i = 11;
+            while (i >= 0 && lastRandomChars[i] == 63) {
+                lastRandomChars[i--] = 0;
+            }
+            if (i < 0) {
+                // 64^12 claves en un milisegundo: se pasa al siguiente
+                now++;
+                randomize();
+            } else {
+                lastRandomChars[i]++;
+            }
+        } else {
+            randomize();
+        }
+        lastTimestamp = now;
+
+        StringBuilder key = new StringBuilder(prefix(now));
+        for (int value : lastRandomChars) {
+            key.append(PUSH_CHARS.charAt(value));
+        }
+        return key.toString();
+    }
+
+    private static void randomize() {
+        for (int i = 0; i < 12; i++) {
+            lastRandomChars[i] = RANDOM.nextInt(64);
+        }
+    }
+
+    // Prefijo sintético que ordena justo antes de cualquier push key creada en ese instante
+    public static String prefix(long timestamp) {
+        char[] chars = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            chars[i] = PUSH_CHARS.charAt((int) (timestamp % 64));
+            timestamp /= 64;
+        }
+        return new String(chars);
+    }
+
+    // -1 si la clave no tiene forma de push key
+    public static long timestamp(String key) {
+        if (key == null || key.length() < 8) return -1;
+        long timestamp = 0;
+        for (int i = 0; i < 8; i++) {
+            int value = PUSH_CHARS.indexOf(key.charAt(i));
+            if (value < 0) return -1;
+            timestamp = timestamp * 64 + value;
+        }
+        return timestamp;
+    }
+
+    public static LocalDateTime toDateTime(long timestamp) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+}
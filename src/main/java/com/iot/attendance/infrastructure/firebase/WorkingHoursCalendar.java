@@ -0,0 +1,78 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.infrastructure.persistence.entity.SystemConfigurationEntity;
+import com.iot.attendance.infrastructure.persistence.repository.SystemConfigurationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Set;
+
+/**
+ * Indica si el edificio está en horario laboral según la jornada de SystemConfigurationEntity,
+ * ampliada con un margen antes de la entrada y después de la salida. La configuración se cachea
+ * y se refresca cada minuto para no consultar la BD en cada ciclo de polling.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WorkingHoursCalendar {
+
+    private static final long REFRESH_INTERVAL_MS = 60_000;
+
+    @Value("${attendance.work-start-time}")
+    private String defaultWorkStartTime;
+
+    @Value("${attendance.work-end-time:17:00:00}")
+    private String defaultWorkEndTime;
+
+    @Value("${firebase.ingestion.polling.working-hours-margin-minutes:60}")
+    private long marginMinutes;
+
+    @Value("${firebase.ingestion.polling.working-days:MONDAY,TUESDAY,WEDNESDAY,THURSDAY,FRIDAY,SATURDAY,SUNDAY}")
+    private Set<DayOfWeek> workingDays;
+
+    private final SystemConfigurationRepository configRepository;
+
+    private volatile LocalTime workStart;
+    private volatile LocalTime workEnd;
+    private volatile long loadedAt;
+
+    public boolean isWorkingHours(LocalDateTime now) {
+        refreshIfStale();
+
+        LocalTime windowStart = workStart.minusMinutes(marginMinutes);
+        LocalTime windowEnd = workEnd.plusMinutes(marginMinutes);
+        LocalTime time = now.toLocalTime();
+
+        // Turno nocturno: la ventana cruza la medianoche y el día laboral es el del inicio del turno
+        if (windowStart.isAfter(windowEnd)) {
+            if (!time.isBefore(windowStart)) return workingDays.contains(now.getDayOfWeek());
+            if (!time.isAfter(windowEnd)) return workingDays.contains(now.getDayOfWeek().minus(1));
+            return false;
+        }
+        return workingDays.contains(now.getDayOfWeek()) && !time.isBefore(windowStart) && !time.isAfter(windowEnd);
+    }
+
+    private void refreshIfStale() {
+        long now = System.currentTimeMillis();
+        if (workStart != null && now - loadedAt < REFRESH_INTERVAL_MS) return;
+
+        try {
+            SystemConfigurationEntity config = configRepository.findLatestConfiguration().orElse(null);
+            workStart = config != null ? config.getWorkStartTime() : LocalTime.parse(defaultWorkStartTime);
+            workEnd = config != null ? config.getWorkEndTime() : LocalTime.parse(defaultWorkEndTime);
+        } catch (Exception e) {
+            log.warn("⚠ No se pudo leer la jornada laboral: {}", e.getMessage());
+            if (workStart == null) {
+                workStart = LocalTime.parse(defaultWorkStartTime);
+                workEnd = LocalTime.parse(defaultWorkEndTime);
+            }
+        }
+        loadedAt = now;
+    }
+}
@@ -0,0 +1,64 @@
+package com.iot.attendance.infrastructure.persistence.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "firebase_outbox",
+        indexes = @Index(name = "idx_outbox_status_next", columnList = "status, next_attempt_at"))
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FirebaseOutboxEntity {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_FAILED = "FAILED";
+    // Borrado sin respuesta del ESP32 tras su único reintento: no se sabe si se ejecutó, lo resuelve un operador
+    public static final String STATUS_UNCERTAIN = "UNCERTAIN";
+
+    // PUSH: nueva entrada bajo target_path | BORRAR: borrado de huella en el sensor (payload = ID)
+    public static final String OPERATION_PUSH = "PUSH";
+    public static final String OPERATION_DELETE_FINGERPRINT = "BORRAR";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "target_path", nullable = false, length = 100)
+    private String targetPath;
+
+    @Column(name = "operation", nullable = false, length = 20)
+    private String operation;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    // Clave asignada al enviar; se conserva si el resultado del envío fue incierto
+    @Column(name = "push_key", length = 64)
+    private String pushKey;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "attempt_count", nullable = false)
+    private Integer attemptCount;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    // Un borrado que venció sin respuesta ya usó su único reintento
+    @Column(name = "timed_out")
+    private Boolean timedOut;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,32 @@
+package com.iot.attendance.infrastructure.persistence.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Clave de origen (ruta de la partición + push key) de cada evento ya aplicado; la escribe IngestionBatchProcessor por JDBC
+@Entity
+@Table(name = "ingested_events",
+        uniqueConstraints = @UniqueConstraint(name = "uk_ingested_event_source_key", columnNames = {"source", "push_key"}),
+        indexes = @Index(name = "idx_ingested_event_ingested_at", columnList = "ingested_at"))
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestedEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "source", nullable = false, length = 100)
+    private String source;
+
+    @Column(name = "push_key", nullable = false, length = 64)
+    private String pushKey;
+
+    @Column(name = "ingested_at", nullable = false)
+    private LocalDateTime ingestedAt;
+}
@@ -0,0 +1,28 @@
+package com.iot.attendance.infrastructure.persistence.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ingestion_cursors")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionCursorEntity {
+
+    @Id
+    @Column(name = "node", nullable = false, length = 100)
+    private String node;
+
+    @Column(name = "last_key", nullable = false, length = 64)
+    private String lastKey;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
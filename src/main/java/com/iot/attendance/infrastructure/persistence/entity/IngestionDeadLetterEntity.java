@@ -0,0 +1,63 @@
+package com.iot.attendance.infrastructure.persistence.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ingestion_dead_letters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_dead_letter_node_key", columnNames = {"node", "push_key"}),
+        indexes = @Index(name = "idx_dead_letter_status_next", columnList = "status, next_attempt_at"))
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionDeadLetterEntity {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_EXHAUSTED = "EXHAUSTED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // null en filas anteriores a multi-sede: equivale a la sede por defecto
+    @Column(name = "site", length = 50)
+    private String site;
+
+    @Column(name = "node", nullable = false, length = 20)
+    private String node;
+
+    @Column(name = "push_key", nullable = false, length = 64)
+    private String pushKey;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "attempt_count", nullable = false)
+    private Integer attemptCount;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
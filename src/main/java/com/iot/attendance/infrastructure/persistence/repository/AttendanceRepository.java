@@ -2,13 +2,17 @@ package com.iot.attendance.infrastructure.persistence.repository;
 
 import com.iot.attendance.domain.enums.AttendanceStatus;
 import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -39,6 +43,11 @@ public interface AttendanceRepository extends JpaRepository<AttendanceEntity, Lo
     @Query("SELECT a FROM AttendanceEntity a WHERE a.workerId = :workerId AND a.status = 'CHECKED_IN'")
     Optional<AttendanceEntity> findActiveAttendanceByWorkerId(@Param("workerId") Long workerId);
 
+    // Solo lectura: el lote de ingesta escribe los check-outs con JDBC batch, sin dirty checking
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT a FROM AttendanceEntity a WHERE a.workerId IN :workerIds AND a.status = 'CHECKED_IN'")
+    List<AttendanceEntity> findActiveAttendancesByWorkerIds(@Param("workerIds") Collection<Long> workerIds);
+
     @Query("SELECT COUNT(a) FROM AttendanceEntity a WHERE a.workerId = :workerId AND a.attendanceDate BETWEEN :startDate AND :endDate AND a.isLate = true")
     long countLateAttendances(
             @Param("workerId") Long workerId,
@@ -0,0 +1,19 @@
+package com.iot.attendance.infrastructure.persistence.repository;
+
+import com.iot.attendance.infrastructure.persistence.entity.FirebaseOutboxEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FirebaseOutboxRepository extends JpaRepository<FirebaseOutboxEntity, Long> {
+
+    // Incluye las que aún esperan su reintento: el relay las necesita para no adelantar a las siguientes de su ruta
+    @Query("SELECT o FROM FirebaseOutboxEntity o WHERE o.status = 'PENDING' ORDER BY o.id ASC")
+    List<FirebaseOutboxEntity> findPending(Pageable pageable);
+
+    long countByStatus(String status);
+}
@@ -0,0 +1,22 @@
+package com.iot.attendance.infrastructure.persistence.repository;
+
+import com.iot.attendance.infrastructure.persistence.entity.IngestedEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IngestedEventRepository extends JpaRepository<IngestedEventEntity, Long> {
+
+    // Solo lo que el cursor ya pasó: eso no vuelve a entregarse. COLLATE "C" compara como las push keys (byte a byte)
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM ingested_events e USING ingestion_cursors c WHERE c.node = e.source " +
+            "AND e.push_key COLLATE \"C\" <= c.last_key COLLATE \"C\" AND e.ingested_at < :cutoff", nativeQuery = true)
+    int pruneCommitted(@Param("cutoff") LocalDateTime cutoff);
+}
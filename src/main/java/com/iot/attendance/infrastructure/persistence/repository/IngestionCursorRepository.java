@@ -0,0 +1,23 @@
+package com.iot.attendance.infrastructure.persistence.repository;
+
+import com.iot.attendance.infrastructure.persistence.entity.IngestionCursorEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface IngestionCursorRepository extends JpaRepository<IngestionCursorEntity, String> {
+
+    // Upsert monotónico: varios carriles pueden escribir el cursor, nunca retrocede.
+    // COLLATE "C": las push keys se ordenan byte a byte (compareTo, orderBy="$key"); con la collation de la BD
+    // (p. ej. en_US.UTF-8) '-', '_' y mayúsculas/minúsculas quedan en otro orden
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO ingestion_cursors (node, last_key, updated_at) VALUES (:node, :lastKey, now()) " +
+            "ON CONFLICT (node) DO UPDATE SET last_key = EXCLUDED.last_key, updated_at = EXCLUDED.updated_at " +
+            "WHERE ingestion_cursors.last_key COLLATE \"C\" < EXCLUDED.last_key COLLATE \"C\"", nativeQuery = true)
+    int advance(@Param("node") String node, @Param("lastKey") String lastKey);
+}
@@ -0,0 +1,36 @@
+package com.iot.attendance.infrastructure.persistence.repository;
+
+import com.iot.attendance.infrastructure.persistence.entity.IngestionDeadLetterEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IngestionDeadLetterRepository extends JpaRepository<IngestionDeadLetterEntity, Long> {
+
+    Optional<IngestionDeadLetterEntity> findByNodeAndPushKey(String node, String pushKey);
+
+    List<IngestionDeadLetterEntity> findAllByOrderByCreatedAtDesc();
+
+    List<IngestionDeadLetterEntity> findAllByOrderByReceivedAtAsc();
+
+    List<IngestionDeadLetterEntity> findByStatusOrderByCreatedAtDesc(String status);
+
+    @Query("SELECT d FROM IngestionDeadLetterEntity d WHERE d.status = 'PENDING' " +
+            "AND d.nextAttemptAt <= :now ORDER BY d.receivedAt ASC")
+    List<IngestionDeadLetterEntity> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(String status);
+
+    @Modifying
+    @Transactional
+    long deleteByStatus(String status);
+}
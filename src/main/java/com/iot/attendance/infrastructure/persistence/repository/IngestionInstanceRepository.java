@@ -0,0 +1,28 @@
+package com.iot.attendance.infrastructure.persistence.repository;
+
+import com.iot.attendance.infrastructure.persistence.entity.IngestionInstanceEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IngestionInstanceRepository extends JpaRepository<IngestionInstanceEntity, String> {
+
+    // La hora la pone la aplicación para compararla con la misma referencia en countByHeartbeatAtAfter
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO ingestion_instances (instance_id, heartbeat_at) VALUES (:instanceId, :now) " +
+            "ON CONFLICT (instance_id) DO UPDATE SET heartbeat_at = EXCLUDED.heartbeat_at", nativeQuery = true)
+    int heartbeat(@Param("instanceId") String instanceId, @Param("now") LocalDateTime now);
+
+    long countByHeartbeatAtAfter(LocalDateTime since);
+
+    @Modifying
+    @Transactional
+    long deleteByHeartbeatAtBefore(LocalDateTime before);
+}
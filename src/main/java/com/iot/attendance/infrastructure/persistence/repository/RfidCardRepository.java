@@ -2,10 +2,17 @@ package com.iot.attendance.infrastructure.persistence.repository;
 
 import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface RfidCardRepository extends JpaRepository<RfidCardEntity, String> {
     List<RfidCardEntity> findByWorkerIsNull();
-}
\ No newline at end of file
+
+    @Query("SELECT c FROM RfidCardEntity c LEFT JOIN FETCH c.worker WHERE c.uid IN :uids")
+    List<RfidCardEntity> findAllWithWorkerByUidIn(@Param("uids") Collection<String> uids);
+}
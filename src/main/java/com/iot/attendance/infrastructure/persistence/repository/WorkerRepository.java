@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +17,8 @@ public interface WorkerRepository extends JpaRepository<WorkerEntity, Long> {
 
     Optional<WorkerEntity> findByFingerprintId(Integer fingerprintId);
 
+    List<WorkerEntity> findByFingerprintIdIn(Collection<Integer> fingerprintIds);
+
     List<WorkerEntity> findByStatus(WorkerStatus status);
 
     @Query("SELECT w FROM WorkerEntity w WHERE w.hasRestrictedAreaAccess = true AND w.status = 'ACTIVE'")
@@ -1,6 +1,8 @@
 package com.iot.attendance.presentation.controller;
 
 import com.iot.attendance.application.dto.response.ApiResponse;
+import com.iot.attendance.infrastructure.firebase.DeviceCommandBus;
+import com.iot.attendance.infrastructure.firebase.FirebaseAdminStateWatcher;
 import com.iot.attendance.infrastructure.firebase.FirebaseRealtimeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,7 +12,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -21,34 +25,33 @@ import java.util.concurrent.CompletableFuture;
 @Tag(name = "Firebase Admin", description = "Comandos de administración para dispositivos IoT")
 public class FirebaseAdminController {
 
+    private static final int REGISTER_TIMEOUT_SECONDS = 40;
+
     private final FirebaseRealtimeService firebaseService;
+    private final DeviceCommandBus commandBus;
 
     @GetMapping("/diagnose")
     @Operation(summary = "Diagnóstico completo del nodo admin",
-            description = "Lee todo el nodo admin para debugging")
-    public ResponseEntity<ApiResponse<Map<String, String>>> diagnose() {
+            description = "Devuelve el espejo en memoria del nodo admin (comando, estado, id_target, ultimo_id_creado) y si está desactualizado")
+    public ResponseEntity<ApiResponse<FirebaseAdminStateWatcher.AdminSnapshot>> diagnose() {
         log.info("Ejecutando diagnóstico de Firebase");
 
         firebaseService.diagnoseAdminNode();
 
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Check server logs for detailed diagnostics");
-
-        return ResponseEntity.ok(ApiResponse.success("Diagnostics completed", response));
+        return ResponseEntity.ok(ApiResponse.success("Diagnostics completed", firebaseService.getAdminSnapshot()));
     }
 
     @GetMapping("/command")
     @Operation(summary = "Obtener comando actual",
-            description = "Lee el comando actual configurado en Firebase para el ESP32")
-    public ResponseEntity<ApiResponse<Map<String, String>>> getCurrentCommand() {
-        CompletableFuture<String> commandFuture = firebaseService.getAdminCommand();
-
-        String command = commandFuture.join();
-
-        Map<String, String> response = new HashMap<>();
-        response.put("command", command);
-
-        return ResponseEntity.ok(ApiResponse.success(response));
+            description = "Lee el comando actual del ESP32 desde el espejo en memoria de /admin")
+    public CompletableFuture<ResponseEntity<ApiResponse<Map<String, Object>>>> getCurrentCommand() {
+        return firebaseService.getAdminCommand().thenApply(command -> {
+            Map<String, Object> response = new HashMap<>();
+            response.put("command", command);
+            putStaleness(response);
+
+            return ResponseEntity.ok(ApiResponse.success(response));
+        });
     }
 
     @PostMapping("/command/register")
@@ -57,12 +60,11 @@ public class FirebaseAdminController {
     public ResponseEntity<ApiResponse<Map<String, String>>> sendRegisterCommand() {
         log.info("Sending REGISTER command to ESP32");
 
-        firebaseService.setAdminCommand("REGISTRAR");
-        firebaseService.setAdminState("ESPERANDO_REGISTRO");
+        commandBus.register(Duration.ofSeconds(REGISTER_TIMEOUT_SECONDS), () -> { });
 
         Map<String, String> response = new HashMap<>();
         response.put("command", "REGISTRAR");
-        response.put("message", "Command sent to ESP32. Please place finger on sensor.");
+        response.put("message", "Command queued for ESP32. Please place finger on sensor.");
 
         return ResponseEntity.ok(ApiResponse.success(
                 "Register command sent successfully",
@@ -79,14 +81,12 @@ public class FirebaseAdminController {
 
         log.info("Sending DELETE command for fingerprint ID: {}", fingerprintId);
 
-        firebaseService.setTargetFingerprintId(fingerprintId);
-        firebaseService.setAdminCommand("BORRAR");
-        firebaseService.setAdminState("BORRANDO");
+        commandBus.deleteFingerprint(fingerprintId);
 
         Map<String, String> response = new HashMap<>();
         response.put("command", "BORRAR");
         response.put("targetId", String.valueOf(fingerprintId));
-        response.put("message", "Delete command sent to ESP32");
+        response.put("message", "Delete command queued for ESP32");
 
         return ResponseEntity.ok(ApiResponse.success(
                 "Delete command sent successfully",
@@ -100,12 +100,11 @@ public class FirebaseAdminController {
     public ResponseEntity<ApiResponse<Map<String, String>>> sendFormatCommand() {
         log.warn("Sending FORMAT command - This will delete ALL fingerprints!");
 
-        firebaseService.setAdminCommand("FORMATEAR");
-        firebaseService.setAdminState("FORMATEANDO");
+        commandBus.format();
 
         Map<String, String> response = new HashMap<>();
         response.put("command", "FORMATEAR");
-        response.put("message", "Format command sent to ESP32. All fingerprints will be deleted.");
+        response.put("message", "Format command queued for ESP32. All fingerprints will be deleted.");
 
         return ResponseEntity.ok(ApiResponse.success(
                 "Format command sent successfully",
@@ -119,8 +118,7 @@ public class FirebaseAdminController {
     public ResponseEntity<ApiResponse<Map<String, String>>> clearCommand() {
         log.info("Clearing admin command");
 
-        firebaseService.setAdminCommand("NADA");
-        firebaseService.setAdminState("LISTO");
+        commandBus.reset();
 
         Map<String, String> response = new HashMap<>();
         response.put("command", "NADA");
@@ -132,14 +130,22 @@ public class FirebaseAdminController {
         ));
     }
 
+    @GetMapping("/commands")
+    @Operation(summary = "Historial del bus de comandos",
+            description = "Últimos comandos enviados al ESP32 (más reciente primero) con su estado de confirmación")
+    public ResponseEntity<ApiResponse<List<DeviceCommandBus.CommandResult>>> getCommandHistory() {
+        return ResponseEntity.ok(ApiResponse.success(commandBus.getHistory()));
+    }
+
     @GetMapping("/last-fingerprint-id")
     @Operation(summary = "Obtener último ID de huella creado",
             description = "Consulta el ID de la última huella registrada por el ESP32")
-    public ResponseEntity<ApiResponse<Map<String, Integer>>> getLastFingerprintId() {
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getLastFingerprintId() {
         Integer lastId = firebaseService.getLastFingerprintIdSync();
 
-        Map<String, Integer> response = new HashMap<>();
+        Map<String, Object> response = new HashMap<>();
         response.put("lastFingerprintId", lastId);
+        putStaleness(response);
 
         return ResponseEntity.ok(ApiResponse.success(response));
     }
@@ -157,4 +163,11 @@ public class FirebaseAdminController {
 
         return ResponseEntity.ok(ApiResponse.success("State updated", response));
     }
+
+    // Las lecturas salen del espejo de /admin: se indica si está desactualizado y hace cuánto
+    private void putStaleness(Map<String, Object> response) {
+        FirebaseAdminStateWatcher.AdminSnapshot snapshot = firebaseService.getAdminSnapshot();
+        response.put("stale", snapshot.isStale());
+        response.put("ageMs", snapshot.getAgeMs());
+    }
 }
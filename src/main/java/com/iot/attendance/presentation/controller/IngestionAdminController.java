@@ -0,0 +1,164 @@
+package com.iot.attendance.presentation.controller;
+
+import com.iot.attendance.application.dto.response.ApiResponse;
+import com.iot.attendance.application.dto.response.DeadLetterResponse;
+import com.iot.attendance.application.service.IngestionDeadLetterService;
+import com.iot.attendance.infrastructure.exception.FirebaseException;
+import com.iot.attendance.infrastructure.firebase.FirebaseExportReplayService;
+import com.iot.attendance.infrastructure.firebase.FirebaseLogCompactionService;
+import com.iot.attendance.infrastructure.firebase.IngestionLeaderElection;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/ingestion")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Ingestion Admin", description = "Administración de la ingesta de eventos de Firebase")
+public class IngestionAdminController {
+
+    private final IngestionDeadLetterService deadLetterService;
+    private final FirebaseLogCompactionService compactionService;
+    private final IngestionLeaderElection leaderElection;
+    private final FirebaseExportReplayService replayService;
+
+    @GetMapping("/leader")
+    @Operation(summary = "Estado de liderazgo de ingesta",
+            description = "Indica qué sedes ingiere esta réplica desde Firebase")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getLeadership() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("instanceId", leaderElection.getInstanceId());
+        response.put("ownedSites", leaderElection.getOwnedSites());
+        response.put("coordinator", leaderElection.isCoordinator());
+
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    @GetMapping("/dead-letters")
+    @Operation(summary = "Listar eventos en dead-letter",
+            description = "Eventos que fallaron al procesarse. Filtra por estado: PENDING o EXHAUSTED")
+    public ResponseEntity<ApiResponse<List<DeadLetterResponse>>> getDeadLetters(
+            @Parameter(description = "Estado (PENDING, EXHAUSTED)")
+            @RequestParam(required = false) String status) {
+
+        return ResponseEntity.ok(ApiResponse.success(deadLetterService.getDeadLetters(status)));
+    }
+
+    @PostMapping("/dead-letters/{id}/replay")
+    @Operation(summary = "Reprocesar un evento en dead-letter")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> replay(
+            @Parameter(description = "ID del dead-letter") @PathVariable Long id) {
+
+        log.info("Replaying dead-letter {}", id);
+        boolean recovered = deadLetterService.replay(id);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", id);
+        response.put("recovered", recovered);
+
+        return ResponseEntity.ok(ApiResponse.success(
+                recovered ? "Event reprocessed successfully" : "Replay failed, event kept in dead-letter",
+                response
+        ));
+    }
+
+    @PostMapping("/dead-letters/replay")
+    @Operation(summary = "Reprocesar todos los eventos en dead-letter")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> replayAll() {
+        log.info("Replaying all dead-letters");
+
+        Map<String, Integer> response = new HashMap<>();
+        response.put("recovered", deadLetterService.replayAll());
+
+        return ResponseEntity.ok(ApiResponse.success("Replay completed", response));
+    }
+
+    @DeleteMapping("/dead-letters/{id}")
+    @Operation(summary = "Eliminar un evento en dead-letter")
+    public ResponseEntity<ApiResponse<Void>> delete(
+            @Parameter(description = "ID del dead-letter") @PathVariable Long id) {
+
+        log.warn("Deleting dead-letter {}", id);
+        deadLetterService.delete(id);
+
+        return ResponseEntity.ok(ApiResponse.success("Dead-letter deleted successfully", null));
+    }
+
+    @DeleteMapping("/dead-letters")
+    @Operation(summary = "Purgar dead-letters",
+            description = "Elimina todos los eventos en dead-letter, o solo los del estado indicado")
+    public ResponseEntity<ApiResponse<Map<String, Long>>> purge(
+            @Parameter(description = "Estado (PENDING, EXHAUSTED)")
+            @RequestParam(required = false) String status) {
+
+        log.warn("Purging dead-letters (status: {})", status != null ? status : "ALL");
+
+        Map<String, Long> response = new HashMap<>();
+        response.put("deleted", deadLetterService.purge(status));
+
+        return ResponseEntity.ok(ApiResponse.success("Dead-letters purged", response));
+    }
+
+    @PostMapping("/compaction")
+    @Operation(summary = "Compactar logs de Firebase",
+            description = "Elimina de /logs/* las entradas ya confirmadas en la BD y fuera de la retención")
+    public ResponseEntity<ApiResponse<FirebaseLogCompactionService.CompactionReport>> compact() {
+        log.info("Running Firebase log compaction");
+        try {
+            return ResponseEntity.ok(ApiResponse.success("Compaction completed", compactionService.compact()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FirebaseException("Compaction interrupted", e);
+        } catch (Exception e) {
+            throw new FirebaseException("Compaction failed: " + e.getMessage(), e);
+        }
+    }
+
+    @PostMapping("/replay")
+    @Operation(summary = "Reconstruir desde un export de Firebase",
+            description = "Reprocesa en segundo plano los /logs/* de un export JSON con la hora de cada push key. " +
+                    "Un replay detenido con el mismo nombre retoma desde su último punto de control")
+    public ResponseEntity<ApiResponse<FirebaseExportReplayService.ReplayStatus>> startReplay(
+            @Parameter(description = "Ruta del export en el servidor") @RequestParam String file,
+            @Parameter(description = "Nombre del replay (por defecto, el del archivo)") @RequestParam(required = false) String name,
+            @Parameter(description = "Ruta de Firebase exportada, vacía si es la base completa") @RequestParam(required = false) String root,
+            @Parameter(description = "Inicio de la ventana a reconstruir")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Fin de la ventana a reconstruir (exclusivo)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Ignorar puntos de control previos") @RequestParam(defaultValue = "false") boolean restart) {
+
+        log.info("Starting Firebase export replay from {} (window {} - {})", file, from, to);
+        FirebaseExportReplayService.ReplayStatus status = replayService.start(Path.of(file), name, root, from, to, restart);
+
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Replay started", status));
+    }
+
+    @GetMapping("/replay")
+    @Operation(summary = "Progreso del replay", description = "Eventos procesados, eventos/s y puntos de control")
+    public ResponseEntity<ApiResponse<FirebaseExportReplayService.ReplayStatus>> getReplayStatus() {
+        return ResponseEntity.ok(ApiResponse.success(replayService.getStatus()));
+    }
+
+    @PostMapping("/replay/stop")
+    @Operation(summary = "Detener el replay", description = "Termina el lote en curso y conserva el punto de control")
+    public ResponseEntity<ApiResponse<FirebaseExportReplayService.ReplayStatus>> stopReplay() {
+        log.warn("Stopping Firebase export replay");
+        return ResponseEntity.ok(ApiResponse.success("Replay stopping", replayService.stop()));
+    }
+}
@@ -5,7 +5,10 @@ import com.iot.attendance.application.dto.request.AssignFingerprintRequest;
 import com.iot.attendance.application.dto.request.CreateWorkerRequest;
 import com.iot.attendance.application.dto.request.UpdateWorkerRequest;
 import com.iot.attendance.application.dto.response.ApiResponse;
+import com.iot.attendance.application.dto.response.EnrollmentJobResponse;
+import com.iot.attendance.application.dto.response.WorkerDeletionResponse;
 import com.iot.attendance.application.dto.response.WorkerResponse;
+import com.iot.attendance.application.service.WorkerEnrollmentService;
 import com.iot.attendance.application.service.WorkerService;
 import com.iot.attendance.domain.enums.WorkerStatus;
 import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
@@ -17,10 +20,15 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @RestController
@@ -30,7 +38,9 @@ import java.util.stream.Collectors;
 @Tag(name = "Workers", description = "Gestión de trabajadores")
 public class WorkerController {
 
+    private static final long ENROLLMENT_SSE_TIMEOUT_MS = 120_000;
     private final WorkerService workerService;
+    private final WorkerEnrollmentService enrollmentService;
     private final RfidCardRepository rfidCardRepository;
 
 
@@ -73,17 +83,49 @@ public class WorkerController {
 
     @PostMapping
     @Operation(summary = "Crear trabajador",
-            description = "Inicia el modo registro en el ESP32 y ESPERA hasta obtener la huella. " +
-                    "Esta operación puede tardar hasta 40 segundos.")
-    public ResponseEntity<ApiResponse<WorkerResponse>> createWorker(
+            description = "Crea un job de registro biométrico y retorna 202 con su ID sin esperar la huella. " +
+                    "El resultado se consulta en /enrollments/{jobId} o se recibe por SSE en /enrollments/{jobId}/events.")
+    public ResponseEntity<ApiResponse<EnrollmentJobResponse>> createWorker(
             @Valid @RequestBody CreateWorkerRequest request) {
 
-        log.info("Starting worker creation flow for: {}", request.getDocumentNumber());
-        WorkerResponse response = workerService.createWorker(request);
+        log.info("Starting worker enrollment job for: {}", request.getDocumentNumber());
+        EnrollmentJobResponse job = enrollmentService.startEnrollment(request);
 
         return ResponseEntity
-                .status(HttpStatus.CREATED)
-                .body(ApiResponse.success("Worker created and fingerprint registered successfully", response));
+                .status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/v1/workers/enrollments/" + job.getJobId()))
+                .body(ApiResponse.success("Enrollment started. Please place finger on sensor.", job));
+    }
+
+    @GetMapping("/enrollments/{jobId}")
+    @Operation(summary = "Estado de un registro biométrico",
+            description = "PENDING, WAITING_FINGERPRINT, SAVING, COMPLETED (incluye el trabajador) o FAILED (incluye el error)")
+    public ResponseEntity<ApiResponse<EnrollmentJobResponse>> getEnrollment(@PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponse.success(enrollmentService.getJob(jobId)));
+    }
+
+    @GetMapping(value = "/enrollments/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suscribirse a un registro biométrico",
+            description = "Stream SSE: envía el estado actual y luego el resultado final, y cierra")
+    public SseEmitter subscribeEnrollment(@PathVariable String jobId) {
+        EnrollmentJobResponse current = enrollmentService.getJob(jobId);
+        SseEmitter emitter = new SseEmitter(ENROLLMENT_SSE_TIMEOUT_MS);
+        try {
+            emitter.send(SseEmitter.event().name("status").data(current));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        // Sin hilo bloqueado: el emitter se completa cuando termina el job
+        enrollmentService.awaitCompletion(jobId).thenAccept(result -> {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(result));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
     }
 
     @PostMapping("/bulk")
@@ -222,11 +264,44 @@ public class WorkerController {
     }
 
     @DeleteMapping("/{id}")
-    @Operation(summary = "Eliminar trabajador")
+    @Operation(summary = "Eliminar trabajador",
+            description = "Borra al trabajador de la BD y deja el borrado de su huella en el outbox, sin esperar al sensor")
     public ResponseEntity<ApiResponse<Void>> deleteWorker(@PathVariable Long id) {
         log.info("Deleting worker {}", id);
         workerService.deleteWorker(id);
 
         return ResponseEntity.ok(ApiResponse.success("Worker deleted successfully", null));
     }
+
+    @PostMapping("/bulk-delete")
+    @Operation(summary = "Baja masiva de trabajadores",
+            description = "Borra a todos los trabajadores en una sola transacción, que también deja sus borrados de huella " +
+                    "en el outbox, y retorna 202 con el ID de outbox de cada uno sin esperar al sensor. " +
+                    "El avance se consulta en /bulk-delete/status.")
+    public ResponseEntity<ApiResponse<List<WorkerDeletionResponse>>> bulkDeleteWorkers(
+            @RequestBody List<Long> workerIds) {
+
+        log.info("Bulk deleting {} workers", workerIds.size());
+        List<WorkerDeletionResponse> deletions = workerService.deleteWorkers(workerIds);
+
+        // Los borrados en el sensor pueden tardar más que cualquier timeout HTTP y los envía la réplica coordinadora
+        String outboxIds = deletions.stream()
+                .map(WorkerDeletionResponse::getOutboxId)
+                .filter(Objects::nonNull)
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/v1/workers/bulk-delete/status?outboxIds=" + outboxIds))
+                .body(ApiResponse.success(
+                        String.format("%d workers deleted, fingerprint deletions queued", deletions.size()), deletions));
+    }
+
+    @GetMapping("/bulk-delete/status")
+    @Operation(summary = "Estado de los borrados de huella",
+            description = "Por ID de outbox: QUEUED, RETRYING (con el último error), ACKNOWLEDGED, FAILED o UNCERTAIN (sin confirmar, para revisión)")
+    public ResponseEntity<ApiResponse<List<WorkerDeletionResponse>>> getBulkDeleteStatus(
+            @RequestParam List<Long> outboxIds) {
+        return ResponseEntity.ok(ApiResponse.success(workerService.getFingerprintDeletionStatus(outboxIds)));
+    }
 }
\ No newline at end of file
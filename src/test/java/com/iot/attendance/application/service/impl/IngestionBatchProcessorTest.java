@@ -0,0 +1,171 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.domain.enums.AttendanceStatus;
+import com.iot.attendance.domain.enums.WorkerStatus;
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
+import com.iot.attendance.infrastructure.firebase.DeviceEvent;
+import com.iot.attendance.infrastructure.firebase.FirebaseLogNode;
+import com.iot.attendance.infrastructure.firebase.IngestionEvent;
+import com.iot.attendance.infrastructure.firebase.LogPartition;
+import com.iot.attendance.infrastructure.persistence.entity.AttendanceEntity;
+import com.iot.attendance.infrastructure.persistence.entity.SystemConfigurationEntity;
+import com.iot.attendance.infrastructure.persistence.repository.AttendanceRepository;
+import com.iot.attendance.infrastructure.persistence.repository.SystemConfigurationRepository;
+import com.iot.attendance.infrastructure.persistence.repository.WorkerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IngestionBatchProcessorTest {
+
+    private static final String UID = "04A32B1C";
+    private static final long WORKER_ID = 7L;
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    private final LogPartition partition = new LogPartition(LogPartition.DEFAULT_SITE, FirebaseLogNode.ASISTENCIA, "logs/asistencia");
+
+    // Claves ya presentes en ingested_events (source|push_key)
+    private final Set<String> ingested = new HashSet<>();
+    // Filas enviadas por JDBC batch, por sentencia
+    private final Map<String, List<Object[]>> writes = new HashMap<>();
+
+    private RfidCardCache rfidCardCache;
+    private AttendanceRepository attendanceRepository;
+    private IngestionBatchProcessor processor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        rfidCardCache = mock(RfidCardCache.class);
+        attendanceRepository = mock(AttendanceRepository.class);
+        SystemConfigurationRepository configRepository = mock(SystemConfigurationRepository.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+        when(rfidCardCache.getAll(anyCollection()))
+                .thenReturn(Map.of(UID, new RfidCardSnapshot(UID, WORKER_ID, "Ana Torres", WorkerStatus.ACTIVE)));
+        when(configRepository.findLatestConfiguration()).thenReturn(Optional.of(SystemConfigurationEntity.builder()
+                .workStartTime(LocalTime.of(8, 0))
+                .workEndTime(LocalTime.of(17, 0))
+                .lateThresholdMinutes(15)
+                .build()));
+        doAnswer(invocation -> {
+            claim(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            writes.computeIfAbsent(invocation.getArgument(0), sql -> new ArrayList<>()).addAll(rows);
+            int[] updated = new int[rows.size()];
+            Arrays.fill(updated, 1);
+            return updated;
+        });
+
+        processor = new IngestionBatchProcessor(rfidCardCache, mock(WorkerRepository.class), attendanceRepository,
+                configRepository, new AttendanceRules(), jdbcTemplate);
+    }
+
+    @Test
+    void duplicateKeyInOneBatchIsAppliedOnce() {
+        processor.processBatch(List.of(scan("k1", 8, 5), scan("k1", 8, 5)));
+
+        List<Object[]> inserted = rows("INSERT INTO attendances");
+        assertEquals(1, inserted.size());
+        assertEquals(AttendanceStatus.CHECKED_IN.name(), inserted.get(0)[9]);
+        assertTrue(rows("UPDATE attendances").isEmpty());
+    }
+
+    @Test
+    void checkInAndCheckOutInTheSameBatchInsertAClosedAttendance() {
+        processor.processBatch(List.of(scan("k1", 8, 20), scan("k2", 17, 10)));
+
+        List<Object[]> inserted = rows("INSERT INTO attendances");
+        assertEquals(1, inserted.size());
+        Object[] row = inserted.get(0);
+        assertEquals(DAY.atTime(8, 20), row[4]);
+        assertEquals(DAY.atTime(17, 10), row[5]);
+        assertEquals(8L * 3600 + 50 * 60, row[6]);
+        // 08:20 supera la tolerancia de 15 minutos
+        assertEquals(true, row[7]);
+        assertEquals(20L * 60, row[8]);
+        assertEquals(AttendanceStatus.CHECKED_OUT.name(), row[9]);
+        // El check-in aún no tenía ID: no hay UPDATE de check-out
+        assertTrue(rows("UPDATE attendances").isEmpty());
+    }
+
+    @Test
+    void replayOfAClaimedKeyWritesNothing() {
+        ingested.add("logs/asistencia|k1");
+
+        processor.processBatch(List.of(scan("k1", 8, 5)));
+
+        assertTrue(writes.isEmpty());
+        verifyNoInteractions(rfidCardCache, attendanceRepository);
+    }
+
+    @Test
+    void replayedCheckInDoesNotBecomeACheckOut() {
+        AttendanceEntity open = AttendanceEntity.builder()
+                .id(40L).version(0L).workerId(WORKER_ID).rfidTag(UID).attendanceDate(DAY)
+                .checkInTime(DAY.atTime(8, 5)).status(AttendanceStatus.CHECKED_IN)
+                .build();
+        when(attendanceRepository.findActiveAttendancesByWorkerIds(any())).thenReturn(List.of(open));
+        // k1 es el check-in que ya se escribió antes del reinicio; k2 es la salida real
+        ingested.add("logs/asistencia|k1");
+
+        processor.processBatch(List.of(scan("k1", 8, 5), scan("k2", 17, 30)));
+
+        List<Object[]> checkOuts = rows("UPDATE attendances");
+        assertEquals(1, checkOuts.size());
+        assertEquals(DAY.atTime(17, 30), checkOuts.get(0)[0]);
+        assertEquals(40L, checkOuts.get(0)[4]);
+        assertTrue(rows("INSERT INTO attendances").isEmpty());
+        assertTrue(ingested.contains("logs/asistencia|k2"));
+    }
+
+    private IngestionEvent scan(String key, int hour, int minute) {
+        return new IngestionEvent(partition, key, "Marcaje RFID: 04 A3 2B 1C", new DeviceEvent.RfidScan(UID), DAY.atTime(hour, minute));
+    }
+
+    private List<Object[]> rows(String statementPrefix) {
+        return writes.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(statementPrefix))
+                .flatMap(entry -> entry.getValue().stream())
+                .toList();
+    }
+
+    // Emula INSERT ... ON CONFLICT DO NOTHING RETURNING: solo vuelven las claves que no existían
+    private void claim(PreparedStatementCreator creator, RowCallbackHandler handler) throws Exception {
+        List<Object[]> arrays = new ArrayList<>();
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(connection.createArrayOf(eq("varchar"), any())).thenAnswer(invocation -> {
+            arrays.add(invocation.getArgument(1));
+            return mock(Array.class);
+        });
+        creator.createPreparedStatement(connection);
+
+        Object[] sources = arrays.get(0);
+        Object[] keys = arrays.get(1);
+        for (int i = 0; i < keys.length; i++) {
+            if (!ingested.add(sources[i] + "|" + keys[i])) continue;
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn((String) sources[i]);
+            when(rs.getString(2)).thenReturn((String) keys[i]);
+            handler.processRow(rs);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.iot.attendance.application.service.impl;
+
+import com.iot.attendance.domain.valueobjects.RfidCardSnapshot;
+import com.iot.attendance.infrastructure.persistence.entity.RfidCardEntity;
+import com.iot.attendance.infrastructure.persistence.entity.WorkerEntity;
+import com.iot.attendance.infrastructure.persistence.repository.RfidCardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RfidCardCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Estado de rfid_cards que ve la consulta
+    private final Map<String, RfidCardEntity> cards = new HashMap<>();
+
+    private RfidCardRepository repository;
+    private RfidCardCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RfidCardRepository.class);
+        when(repository.findAllWithWorkerByUidIn(any())).thenAnswer(invocation -> load(invocation.getArgument(0)));
+
+        cache = new RfidCardCache(repository, meterRegistry);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        cache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void cachedCardIsServedWithoutQuerying() {
+        assign("04A32B1C", 7L, "Ana");
+
+        assertEquals(7L, cache.get("04A32B1C").orElseThrow().getWorkerId());
+        assertEquals(7L, cache.get("04A32B1C").orElseThrow().getWorkerId());
+
+        verify(repository, times(1)).findAllWithWorkerByUidIn(any());
+        assertEquals(1.0, meterRegistry.get("attendance.rfid.cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void unknownUidIsCachedNegatively() {
+        assertTrue(cache.get("FFFFFFFF").isEmpty());
+        assertTrue(cache.get("FFFFFFFF").isEmpty());
+
+        verify(repository, times(1)).findAllWithWorkerByUidIn(any());
+    }
+
+    @Test
+    void batchLoadsOnlyMissingUidsInOneQuery() {
+        assign("AA", 1L, "Ana");
+        assign("BB", 2L, "Luis");
+        cache.get("AA");
+
+        Map<String, RfidCardSnapshot> resolved = cache.getAll(List.of("AA", "BB", "CC"));
+
+        assertEquals(Set.of("AA", "BB"), resolved.keySet());
+        verify(repository).findAllWithWorkerByUidIn(Set.of("BB", "CC"));
+    }
+
+    @Test
+    void invalidationDuringALoadIsNotUndoneByItsStore() {
+        assign("04A32B1C", 7L, "Ana");
+        // La tarjeta se libera mientras la consulta ya leyó la asignación anterior
+        doAnswer(invocation -> {
+            List<RfidCardEntity> loaded = load(invocation.getArgument(0));
+            release("04A32B1C");
+            cache.invalidate("04A32B1C");
+            return loaded;
+        }).doAnswer(invocation -> load(invocation.getArgument(0))).when(repository).findAllWithWorkerByUidIn(any());
+
+        assertEquals(7L, cache.get("04A32B1C").orElseThrow().getWorkerId());
+
+        // El resultado viejo no quedó en caché: la siguiente lectura consulta y ve la tarjeta libre
+        assertFalse(cache.get("04A32B1C").orElseThrow().isAssigned());
+        verify(repository, times(2)).findAllWithWorkerByUidIn(any());
+    }
+
+    @Test
+    void invalidationInsideATransactionWaitsForItsEnd() {
+        assign("04A32B1C", 7L, "Ana");
+        cache.get("04A32B1C");
+
+        TransactionSynchronizationManager.initSynchronization();
+        release("04A32B1C");
+        cache.invalidate("04A32B1C");
+
+        // Antes del commit se sigue sirviendo lo que estaba en caché
+        assertTrue(cache.get("04A32B1C").orElseThrow().isAssigned());
+        verify(repository, times(1)).findAllWithWorkerByUidIn(any());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertFalse(cache.get("04A32B1C").orElseThrow().isAssigned());
+        verify(repository, times(2)).findAllWithWorkerByUidIn(any());
+    }
+
+    @Test
+    void workerInvalidationEvictsAllItsCards() {
+        assign("AA", 1L, "Ana");
+        assign("AB", 1L, "Ana");
+        assign("BB", 2L, "Luis");
+        cache.getAll(List.of("AA", "AB", "BB"));
+
+        cache.invalidateWorker(1L);
+        cache.getAll(List.of("AA", "AB", "BB"));
+
+        verify(repository).findAllWithWorkerByUidIn(Set.of("AA", "AB"));
+    }
+
+    @Test
+    void fullCacheIsClearedBeforeStoring() {
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        assign("AA", 1L, "Ana");
+        assign("BB", 2L, "Luis");
+        assign("CC", 3L, "Rosa");
+        cache.getAll(List.of("AA", "BB"));
+
+        // Sin entradas vencidas que podar, la caché se vacía para dar lugar a CC
+        assertEquals(3L, cache.get("CC").orElseThrow().getWorkerId());
+        assertEquals(1.0, meterRegistry.get("attendance.rfid.cache.size").gauge().value());
+
+        cache.get("AA");
+        verify(repository).findAllWithWorkerByUidIn(Set.of("AA"));
+    }
+
+    @Test
+    void expiredEntriesAreReloaded() {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+        assign("04A32B1C", 7L, "Ana");
+
+        cache.get("04A32B1C");
+        cache.get("04A32B1C");
+
+        verify(repository, times(2)).findAllWithWorkerByUidIn(any());
+    }
+
+    private void assign(String uid, Long workerId, String firstName) {
+        WorkerEntity worker = WorkerEntity.builder().id(workerId).firstName(firstName).lastName("Pérez").build();
+        cards.put(uid, RfidCardEntity.builder().uid(uid).worker(worker).build());
+    }
+
+    private void release(String uid) {
+        cards.put(uid, RfidCardEntity.builder().uid(uid).build());
+    }
+
+    private List<RfidCardEntity> load(Collection<String> uids) {
+        return uids.stream().map(cards::get).filter(card -> card != null).toList();
+    }
+}
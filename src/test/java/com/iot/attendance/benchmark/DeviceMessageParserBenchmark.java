@@ -0,0 +1,68 @@
+package com.iot.attendance.benchmark;
+
+import com.iot.attendance.infrastructure.firebase.DeviceEvent;
+import com.iot.attendance.infrastructure.firebase.DeviceMessageParser;
+import com.iot.attendance.infrastructure.firebase.FirebaseLogNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compara DeviceMessageParser contra la extracción con regex que usaba el procesamiento de ingesta.
+ * Ejecutar con: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.iot.attendance.benchmark.DeviceMessageParserBenchmark
+ * El perfilador GC reporta además los bytes reservados por operación (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeviceMessageParserBenchmark {
+
+    // Patrones originales de IngestionBatchProcessor
+    private static final Pattern RFID_PATTERN = Pattern.compile("Marcaje RFID: ([A-F0-9 ]+)");
+    private static final Pattern ACCESS_GRANTED_PATTERN = Pattern.compile("Puerta abierta ID: (\\d+)");
+    private static final Pattern ACCESS_DENIED_PATTERN = Pattern.compile("Intento fallido huella|Huella desconocida");
+
+    private final DeviceMessageParser parser = new DeviceMessageParser();
+
+    private final String rfidMessage = "Marcaje RFID: A1 B2 C3 D4";
+    private final String doorMessage = "Puerta abierta ID: 12";
+    private final String deniedMessage = "Intento fallido huella";
+
+    @Benchmark
+    public void parser(Blackhole bh) {
+        bh.consume(parser.parse(FirebaseLogNode.ASISTENCIA, rfidMessage));
+        bh.consume(parser.parse(FirebaseLogNode.ACCESOS, doorMessage));
+        bh.consume(parser.parse(FirebaseLogNode.SEGURIDAD, deniedMessage));
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        Matcher rfid = RFID_PATTERN.matcher(rfidMessage);
+        bh.consume(rfid.find() ? new DeviceEvent.RfidScan(rfid.group(1).toUpperCase().replace(" ", "").trim()) : null);
+
+        Matcher door = ACCESS_GRANTED_PATTERN.matcher(doorMessage);
+        bh.consume(door.find() ? new DeviceEvent.DoorOpened(Integer.parseInt(door.group(1))) : null);
+
+        bh.consume(ACCESS_DENIED_PATTERN.matcher(deniedMessage).find() ? new DeviceEvent.AccessDenied() : null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DeviceMessageParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.iot.attendance.emulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ESP32 simulado sobre el canal /admin de FirebaseRestEmulator: atiende los comandos BORRAR como el firmware,
+ * leyendo id_target y respondiendo en estado. Por defecto responde "BORRADO EXITOSO" al instante; se puede
+ * configurar por huella otra respuesta, una demora o que no responda nunca. Registra los IDs que recibió, en orden.
+ */
+public class AdminDeviceSimulator implements AutoCloseable {
+
+    private static final long POLL_MS = 5;
+
+    private final FirebaseRestEmulator emulator;
+    private final Map<Integer, String> responses = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Long>> delaysMs = new ConcurrentHashMap<>();
+    private final List<Integer> received = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    public AdminDeviceSimulator(FirebaseRestEmulator emulator) {
+        this.emulator = emulator;
+        emulator.set("admin/comando", "NADA");
+        emulator.set("admin/estado", "LISTO");
+        this.thread = new Thread(this::run, "admin-device-simulator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Estado con el que responde al borrar esa huella (p. ej. "BORRADO_FALLO"); null: nunca responde
+    public AdminDeviceSimulator respond(int fingerprintId, String state) {
+        responses.put(fingerprintId, state == null ? "" : state);
+        return this;
+    }
+
+    // Demora de cada respuesta sucesiva a esa huella; las siguientes son inmediatas
+    public AdminDeviceSimulator delay(int fingerprintId, Long... delays) {
+        delaysMs.put(fingerprintId, new CopyOnWriteArrayList<>(delays));
+        return this;
+    }
+
+    public List<Integer> getReceived() {
+        return List.copyOf(received);
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                JsonNode target = emulator.get("admin/id_target");
+                if (target.isNumber() && emulator.get("admin/comando").asText().equals("BORRAR")
+                        && emulator.get("admin/estado").asText().startsWith("BORRANDO")) {
+                    answer(target.asInt());
+                }
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void answer(int fingerprintId) throws InterruptedException {
+        received.add(fingerprintId);
+        emulator.set("admin/comando", "NADA");
+        String state = responses.getOrDefault(fingerprintId, "BORRADO EXITOSO");
+        if (state.isEmpty()) return;
+
+        List<Long> delays = delaysMs.get(fingerprintId);
+        if (delays != null && !delays.isEmpty()) Thread.sleep(delays.remove(0));
+        emulator.set("admin/estado", state);
+    }
+}
@@ -0,0 +1,115 @@
+package com.iot.attendance.emulator;
+
+import com.iot.attendance.infrastructure.firebase.FirebaseLogNode;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Genera tráfico sintético de dispositivos sobre FirebaseRestEmulator a una tasa fija (p. ej. 5000 eventos/s).
+ * Escribe directo en el emulador, sin HTTP, para que la carga medida sea solo la de la ingesta.
+ * Los mensajes usan los mismos formatos que publican los ESP32 (ver DeviceMessageParser) y se reparten
+ * entre las sedes indicadas: "default" escribe en /logs/*, cualquier otra en sites/&lt;sede&gt;/logs/*.
+ */
+public class DeviceTrafficGenerator implements AutoCloseable {
+
+    private static final long TICK_MS = 5;
+
+    private final FirebaseRestEmulator emulator;
+    private final List<String> sites;
+    private final int cardCount;
+    private final int fingerprintCount;
+    private final double doorRatio;
+    private final double deniedRatio;
+    private final AtomicLong generated = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "device-traffic-generator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long startedNanos;
+    private volatile double ratePerSecond;
+
+    /**
+     * @param cardCount        tarjetas RFID distintas (UIDs "00 00 00 01", "00 00 00 02", ...)
+     * @param fingerprintCount huellas distintas para los eventos de puerta
+     * @param doorRatio        fracción de eventos que son aperturas de puerta
+     * @param deniedRatio      fracción de eventos que son accesos denegados; el resto son marcajes RFID
+     */
+    public DeviceTrafficGenerator(FirebaseRestEmulator emulator, List<String> sites, int cardCount, int fingerprintCount,
+                                  double doorRatio, double deniedRatio) {
+        this.emulator = emulator;
+        this.sites = sites;
+        this.cardCount = cardCount;
+        this.fingerprintCount = fingerprintCount;
+        this.doorRatio = doorRatio;
+        this.deniedRatio = deniedRatio;
+    }
+
+    public static DeviceTrafficGenerator defaults(FirebaseRestEmulator emulator) {
+        return new DeviceTrafficGenerator(emulator, List.of("default"), 500, 100, 0.1, 0.02);
+    }
+
+    // En cada tick se emite lo que falte para ir al día con la tasa, de modo que las pausas del scheduler se recuperan
+    public void start(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.startedNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    // Tasa efectivamente lograda desde el arranque
+    public double getActualRate() {
+        double seconds = (System.nanoTime() - startedNanos) / 1e9;
+        return seconds > 0 ? generated.get() / seconds : 0;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void tick() {
+        long due = (long) ((System.nanoTime() - startedNanos) / 1e9 * ratePerSecond);
+        while (generated.get() < due && !Thread.currentThread().isInterrupted()) {
+            emit();
+            generated.incrementAndGet();
+        }
+    }
+
+    private void emit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String site = sites.get(random.nextInt(sites.size()));
+        String root = "default".equals(site) ? "" : "sites/" + site + "/";
+
+        double roll = random.nextDouble();
+        if (roll < deniedRatio) {
+            emulator.push(root + FirebaseLogNode.SEGURIDAD.getPath(), random.nextBoolean() ? "Huella desconocida" : "Intento fallido huella");
+        } else if (roll < deniedRatio + doorRatio) {
+            emulator.push(root + FirebaseLogNode.ACCESOS.getPath(), "Puerta abierta ID: " + (1 + random.nextInt(fingerprintCount)));
+        } else {
+            emulator.push(root + FirebaseLogNode.ASISTENCIA.getPath(), "Marcaje RFID: " + uid(1 + random.nextInt(cardCount)));
+        }
+    }
+
+    public static String uid(int card) {
+        return String.format("%02X %02X %02X %02X", (card >>> 24) & 0xFF, (card >>> 16) & 0xFF, (card >>> 8) & 0xFF, card & 0xFF);
+    }
+}
@@ -0,0 +1,540 @@
+package com.iot.attendance.emulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.iot.attendance.infrastructure.firebase.PushKeys;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sustituto embebido de la API REST de Firebase Realtime Database para pruebas de carga sin conexión.
+ * Emula lo que usan FirebaseRealtimeService y la ingesta:
+ * <ul>
+ *   <li>GET con orderBy="$key", startAt, endAt, limitToFirst y limitToLast</li>
+ *   <li>GET con Accept: text/event-stream (SSE: put/patch/keep-alive)</li>
+ *   <li>POST (push key generada como en Firebase), PUT, PATCH multi-ruta y DELETE</li>
+ * </ul>
+ * Los datos viven en memoria en un árbol ordenado por clave. No emula reglas, auth ni orderByChild.
+ * Para probar el manejo de errores se puede rechazar el siguiente pedido de un método (rejectNext) o aplicarlo y
+ * cortar la conexión antes de responder (dropNextResponse), como un resultado incierto.
+ */
+public class FirebaseRestEmulator implements AutoCloseable {
+
+    private static final int DROP_RESPONSE = -1;
+
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DataNode root = new DataNode();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    // Por método: status HTTP del siguiente rechazo, o DROP_RESPONSE para aplicar y no responder
+    private final Map<String, Queue<Integer>> faults = new ConcurrentHashMap<>();
+    // Los atributos de HttpExchange son del contexto, compartidos entre pedidos: el corte se marca aparte
+    private final Set<HttpExchange> dropped = ConcurrentHashMap.newKeySet();
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "firebase-emulator-keepalive");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final HttpServer server;
+    private long lastPushTime;
+    private final int[] lastRandomChars = new int[12];
+
+    public FirebaseRestEmulator(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public static FirebaseRestEmulator start() throws IOException {
+        return start(0);
+    }
+
+    public static FirebaseRestEmulator start(int port) throws IOException {
+        FirebaseRestEmulator emulator = new FirebaseRestEmulator(port);
+        emulator.server.start();
+        emulator.keepAlive.scheduleAtFixedRate(emulator::sendKeepAlive, 30, 30, TimeUnit.SECONDS);
+        return emulator;
+    }
+
+    // Valor para firebase.database-url
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount(String method) {
+        LongAdder counter = requests.get(method);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    // El siguiente pedido con este método responde status sin escribir nada
+    public void rejectNext(String method, int status) {
+        faults.computeIfAbsent(method, m -> new ConcurrentLinkedQueue<>()).add(status);
+    }
+
+    // El siguiente pedido con este método se aplica, pero la conexión se corta sin respuesta
+    public void dropNextResponse(String method) {
+        faults.computeIfAbsent(method, m -> new ConcurrentLinkedQueue<>()).add(DROP_RESPONSE);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void close() {
+        subscribers.forEach(Subscriber::close);
+        keepAlive.shutdownNow();
+        server.stop(0);
+    }
+
+    // ---- Acceso directo (sin HTTP), usado por el generador de tráfico y para sembrar datos ----
+
+    public String push(String path, Object value) {
+        JsonNode json = objectMapper.valueToTree(value);
+        synchronized (this) {
+            String key = nextPushKey();
+            write(join(path, key), json);
+            return key;
+        }
+    }
+
+    public synchronized void set(String path, Object value) {
+        write(normalize(path), objectMapper.valueToTree(value));
+    }
+
+    public synchronized JsonNode get(String path) {
+        DataNode node = root.find(segments(normalize(path)));
+        return node != null ? node.toJson(objectMapper) : NullNode.getInstance();
+    }
+
+    public synchronized int childCount(String path) {
+        DataNode node = root.find(segments(normalize(path)));
+        return node != null && node.children != null ? node.children.size() : 0;
+    }
+
+    // ---- HTTP ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+        requests.computeIfAbsent(method, m -> new LongAdder()).increment();
+
+        // Con database-url terminada en "/" llega "//logs/...", que URI interpreta como autoridad "logs"
+        URI uri = exchange.getRequestURI();
+        String rawPath = uri.getScheme() == null && uri.getRawAuthority() != null
+                ? "/" + uri.getRawAuthority() + uri.getRawPath()
+                : uri.getRawPath();
+        if (!rawPath.endsWith(".json")) {
+            respond(exchange, 404, "{\"error\":\"404 Not Found\"}");
+            return;
+        }
+        String path = normalize(rawPath.substring(0, rawPath.length() - ".json".length()));
+
+        Queue<Integer> pending = faults.get(method);
+        Integer fault = pending != null ? pending.poll() : null;
+        if (fault != null && fault != DROP_RESPONSE) {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, fault, "{\"error\":\"Rechazo inyectado\"}");
+            return;
+        }
+        if (fault != null) dropped.add(exchange);
+
+        try {
+            Query query = Query.parse(exchange.getRequestURI().getRawQuery());
+            switch (method) {
+                case "GET" -> {
+                    String accept = exchange.getRequestHeaders().getFirst("Accept");
+                    if (accept != null && accept.contains("text/event-stream")) {
+                        subscribe(exchange, path, query);
+                    } else {
+                        respond(exchange, 200, read(path, query).toString());
+                    }
+                }
+                case "POST" -> {
+                    String key = push(path, readBody(exchange));
+                    respond(exchange, 200, "{\"name\":\"" + key + "\"}");
+                }
+                case "PUT" -> {
+                    JsonNode body = readBody(exchange);
+                    synchronized (this) {
+                        write(path, body);
+                    }
+                    respond(exchange, 200, body.toString());
+                }
+                case "PATCH" -> {
+                    JsonNode body = readBody(exchange);
+                    if (!body.isObject()) throw new IllegalArgumentException("PATCH requiere un objeto");
+                    synchronized (this) {
+                        update(path, (ObjectNode) body);
+                    }
+                    respond(exchange, 200, body.toString());
+                }
+                case "DELETE" -> {
+                    synchronized (this) {
+                        write(path, NullNode.getInstance());
+                    }
+                    respond(exchange, 200, "null");
+                }
+                default -> respond(exchange, 405, "{\"error\":\"Method not allowed\"}");
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, objectMapper.createObjectNode().put("error", e.getMessage()).toString());
+        }
+    }
+
+    private synchronized JsonNode read(String path, Query query) {
+        DataNode node = root.find(segments(path));
+        if (node == null) return NullNode.getInstance();
+        if (!query.isFiltered() || node.children == null) return node.toJson(objectMapper);
+
+        ObjectNode result = objectMapper.createObjectNode();
+        query.apply(node.children).forEach((key, child) -> result.set(key, child.toJson(objectMapper)));
+        return result;
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readAllBytes();
+            return bytes.length == 0 ? NullNode.getInstance() : objectMapper.readTree(bytes);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid data; couldn't parse JSON object");
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (dropped.remove(exchange)) {
+            // Sin cabeceras enviadas, close() cierra la conexión: el cliente no sabe si se aplicó
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // ---- Escrituras: siempre bajo el lock del emulador, y notificando a los streams en el mismo orden ----
+
+    private void write(String path, JsonNode value) {
+        List<String> segments = segments(path);
+        if (value == null || value.isNull()) {
+            root.remove(segments, 0);
+        } else {
+            root.set(segments, 0, value);
+        }
+        notifyWrite(path, value == null ? NullNode.getInstance() : value);
+    }
+
+    // PATCH multi-ruta: cada clave puede ser una ruta relativa ("a/b") y null borra
+    private void update(String path, ObjectNode patch) {
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> entry = fields.next();
+            List<String> segments = segments(join(path, entry.getKey()));
+            if (entry.getValue().isNull()) {
+                root.remove(segments, 0);
+            } else {
+                root.set(segments, 0, entry.getValue());
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.path.equals(path)) {
+                subscriber.send("patch", "/", patch);
+            } else {
+                notifySubscriber(subscriber, path, patch);
+            }
+        }
+    }
+
+    private void notifyWrite(String path, JsonNode value) {
+        for (Subscriber subscriber : subscribers) {
+            notifySubscriber(subscriber, path, value);
+        }
+    }
+
+    private void notifySubscriber(Subscriber subscriber, String path, JsonNode value) {
+        if (isAncestorOrSelf(subscriber.path, path)) {
+            String relative = path.substring(subscriber.path.length());
+            if (relative.isEmpty()) relative = "/";
+            if (!subscriber.accepts(relative)) return;
+            subscriber.send("put", relative, value);
+        } else if (isAncestorOrSelf(path, subscriber.path)) {
+            // Se escribió por encima del stream: se reenvía su rama completa
+            DataNode node = root.find(segments(subscriber.path));
+            subscriber.send("put", "/", node != null ? node.toJson(objectMapper) : NullNode.getInstance());
+        }
+    }
+
+    private void subscribe(HttpExchange exchange, String path, Query query) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        Subscriber subscriber = new Subscriber(exchange, path, query);
+        synchronized (this) {
+            subscriber.send("put", "/", read(path, query));
+            subscribers.add(subscriber);
+        }
+        // El handler retorna con la respuesta abierta: las escrituras posteriores la alimentan
+    }
+
+    private void sendKeepAlive() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.send("keep-alive", null, null);
+        }
+    }
+
+    /**
+     * Mismo algoritmo que los SDK de Firebase: 8 caracteres de timestamp más 12 aleatorios que, dentro de un
+     * mismo milisegundo, se incrementan para que las claves sigan siendo estrictamente crecientes.
+     */
+    private String nextPushKey() {
+        long now = System.currentTimeMillis();
+        if (now <= lastPushTime) {
+            now = lastPushTime;
+            int i = 11;
+            while (i >= 0 && lastRandomChars[i] == 63) {
+                lastRandomChars[i] = 0;
+                i--;
+            }
+            if (i >= 0) lastRandomChars[i]++;
+        } else {
+            for (int i = 0; i < 12; i++) lastRandomChars[i] = random.nextInt(64);
+        }
+        lastPushTime = now;
+
+        StringBuilder key = new StringBuilder(20).append(PushKeys.prefix(now));
+        for (int value : lastRandomChars) key.append(PUSH_CHARS.charAt(value));
+        return key.toString();
+    }
+
+    private static boolean isAncestorOrSelf(String ancestor, String path) {
+        return ancestor.isEmpty() || path.equals(ancestor) || path.startsWith(ancestor + "/");
+    }
+
+    private static String normalize(String path) {
+        String trimmed = URLDecoder.decode(path, StandardCharsets.UTF_8);
+        while (trimmed.startsWith("/")) trimmed = trimmed.substring(1);
+        while (trimmed.endsWith("/")) trimmed = trimmed.substring(0, trimmed.length() - 1);
+        return trimmed;
+    }
+
+    private static String join(String path, String child) {
+        String normalized = normalize(path);
+        return normalized.isEmpty() ? normalize(child) : normalized + "/" + normalize(child);
+    }
+
+    private static List<String> segments(String path) {
+        return path.isEmpty() ? List.of() : Arrays.asList(path.split("/"));
+    }
+
+    private static class DataNode {
+
+        private JsonNode leaf;
+        private NavigableMap<String, DataNode> children;
+
+        DataNode find(List<String> segments) {
+            DataNode node = this;
+            for (String segment : segments) {
+                if (node.children == null) return null;
+                node = node.children.get(segment);
+                if (node == null) return null;
+            }
+            return node;
+        }
+
+        void set(List<String> segments, int index, JsonNode value) {
+            if (index == segments.size()) {
+                replace(value);
+                return;
+            }
+            leaf = null;
+            if (children == null) children = new TreeMap<>();
+            children.computeIfAbsent(segments.get(index), k -> new DataNode()).set(segments, index + 1, value);
+            children.get(segments.get(index)).pruneIfEmpty(children, segments.get(index));
+        }
+
+        // Retorna true si el nodo quedó vacío
+        boolean remove(List<String> segments, int index) {
+            if (index == segments.size()) {
+                leaf = null;
+                children = null;
+                return true;
+            }
+            if (children == null) return leaf == null;
+            DataNode child = children.get(segments.get(index));
+            if (child != null && child.remove(segments, index + 1)) children.remove(segments.get(index));
+            if (children.isEmpty()) children = null;
+            return leaf == null && children == null;
+        }
+
+        private void replace(JsonNode value) {
+            leaf = null;
+            children = null;
+            if (value.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> entry = fields.next();
+                    if (entry.getValue().isNull()) continue;
+                    DataNode child = new DataNode();
+                    child.replace(entry.getValue());
+                    if (child.isEmpty()) continue;
+                    if (children == null) children = new TreeMap<>();
+                    children.put(entry.getKey(), child);
+                }
+            } else if (!value.isNull()) {
+                leaf = value;
+            }
+        }
+
+        private void pruneIfEmpty(Map<String, DataNode> parent, String key) {
+            if (isEmpty()) parent.remove(key);
+        }
+
+        boolean isEmpty() {
+            return leaf == null && (children == null || children.isEmpty());
+        }
+
+        JsonNode toJson(ObjectMapper mapper) {
+            if (leaf != null) return leaf;
+            if (children == null) return NullNode.getInstance();
+            ObjectNode object = mapper.createObjectNode();
+            children.forEach((key, child) -> object.set(key, child.toJson(mapper)));
+            return object;
+        }
+    }
+
+    private record Query(String orderBy, String startAt, String endAt, Integer limitToFirst, Integer limitToLast) {
+
+        static Query parse(String rawQuery) {
+            Map<String, String> params = new HashMap<>();
+            if (rawQuery != null) {
+                for (String pair : rawQuery.split("&")) {
+                    int eq = pair.indexOf('=');
+                    if (eq <= 0) continue;
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+            String orderBy = unquote(params.get("orderBy"));
+            if (orderBy != null && !orderBy.equals("$key")) {
+                throw new IllegalArgumentException("El emulador solo soporta orderBy=\"$key\"");
+            }
+            Query query = new Query(orderBy, unquote(params.get("startAt")), unquote(params.get("endAt")),
+                    parseLimit(params.get("limitToFirst")), parseLimit(params.get("limitToLast")));
+            if (query.isFiltered() && orderBy == null) {
+                throw new IllegalArgumentException("orderBy must be defined when other query parameters are defined");
+            }
+            return query;
+        }
+
+        boolean isFiltered() {
+            return startAt != null || endAt != null || limitToFirst != null || limitToLast != null;
+        }
+
+        // relative es "/<clave>[/...]"; los cambios fuera del rango de la consulta no se envían
+        boolean accepts(String relative) {
+            if ("/".equals(relative)) return true;
+            String key = relative.substring(1).split("/", 2)[0];
+            return (startAt == null || key.compareTo(startAt) >= 0) && (endAt == null || key.compareTo(endAt) <= 0);
+        }
+
+        <V> NavigableMap<String, V> apply(NavigableMap<String, V> children) {
+            NavigableMap<String, V> range = children;
+            if (startAt != null && endAt != null) {
+                range = startAt.compareTo(endAt) <= 0 ? children.subMap(startAt, true, endAt, true) : new TreeMap<>();
+            } else if (startAt != null) {
+                range = children.tailMap(startAt, true);
+            } else if (endAt != null) {
+                range = children.headMap(endAt, true);
+            }
+
+            NavigableMap<String, V> limited = new TreeMap<>();
+            if (limitToFirst != null) {
+                for (Map.Entry<String, V> entry : range.entrySet()) {
+                    if (limited.size() >= limitToFirst) break;
+                    limited.put(entry.getKey(), entry.getValue());
+                }
+                return limited;
+            }
+            if (limitToLast != null) {
+                for (Map.Entry<String, V> entry : range.descendingMap().entrySet()) {
+                    if (limited.size() >= limitToLast) break;
+                    limited.put(entry.getKey(), entry.getValue());
+                }
+                return limited;
+            }
+            return range;
+        }
+
+        private static String unquote(String value) {
+            if (value == null) return null;
+            return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+        }
+
+        private static Integer parseLimit(String value) {
+            if (value == null) return null;
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid limit: " + value);
+            }
+        }
+    }
+
+    private class Subscriber {
+
+        private final HttpExchange exchange;
+        private final String path;
+        private final Query query;
+        private final OutputStream out;
+
+        Subscriber(HttpExchange exchange, String path, Query query) {
+            this.exchange = exchange;
+            this.path = path;
+            this.query = query;
+            this.out = exchange.getResponseBody();
+        }
+
+        boolean accepts(String relative) {
+            return query.accepts(relative);
+        }
+
+        synchronized void send(String event, String relativePath, JsonNode data) {
+            String payload = relativePath == null
+                    ? "null"
+                    : objectMapper.createObjectNode().put("path", relativePath).set("data", data).toString();
+            try {
+                out.write(("event: " + event + "\ndata: " + payload + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                // El cliente cerró el stream
+                close();
+            }
+        }
+
+        void close() {
+            subscribers.remove(this);
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.iot.attendance.emulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FirebaseRestEmulatorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private FirebaseRestEmulator emulator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        emulator = FirebaseRestEmulator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        emulator.close();
+    }
+
+    @Test
+    void pushKeysAreIncreasingAndPageWithStartAt() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            JsonNode created = send("POST", "logs/asistencia", "\"Marcaje RFID: 00 00 00 0" + i + "\"");
+            keys.add(created.get("name").asText());
+        }
+        assertEquals(keys.stream().sorted().toList(), keys);
+
+        JsonNode page = get("logs/asistencia", "orderBy=" + encode("\"$key\"") + "&startAt=" + encode("\"" + keys.get(3) + "\"")
+                + "&limitToFirst=4");
+        assertEquals(List.of(keys.get(3), keys.get(4), keys.get(5), keys.get(6)), fieldNames(page));
+
+        JsonNode last = get("logs/asistencia", "orderBy=" + encode("\"$key\"") + "&limitToLast=2");
+        assertEquals(List.of(keys.get(8), keys.get(9)), fieldNames(last));
+    }
+
+    @Test
+    void putPatchAndDelete() throws Exception {
+        send("PUT", "admin/comando", "\"REGISTRAR\"");
+        assertEquals("REGISTRAR", get("admin/comando", null).asText());
+
+        send("PATCH", "admin", "{\"comando\": null, \"estado\": \"ESPERA\", \"meta/version\": 2}");
+        JsonNode admin = get("admin", null);
+        assertFalse(admin.has("comando"));
+        assertEquals("ESPERA", admin.get("estado").asText());
+        assertEquals(2, admin.get("meta").get("version").asInt());
+
+        send("DELETE", "admin", null);
+        assertTrue(get("admin", null).isNull());
+    }
+
+    @Test
+    void streamSendsSnapshotAndLaterChildren() throws Exception {
+        emulator.push("logs/accesos", "Puerta abierta ID: 1");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(emulator.getUrl() + "/logs/accesos.json"))
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            JsonNode snapshot = nextData(reader, "put");
+            assertEquals("/", snapshot.get("path").asText());
+            assertEquals(1, snapshot.get("data").size());
+
+            String key = emulator.push("logs/accesos", "Puerta abierta ID: 2");
+            JsonNode child = nextData(reader, "put");
+            assertEquals("/" + key, child.get("path").asText());
+            assertEquals("Puerta abierta ID: 2", child.get("data").asText());
+        }
+    }
+
+    private JsonNode nextData(BufferedReader reader, String expectedEvent) throws Exception {
+        String event = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:") && expectedEvent.equals(event)) {
+                return objectMapper.readTree(line.substring(5).trim());
+            }
+        }
+        throw new AssertionError("Stream cerrado antes del evento " + expectedEvent);
+    }
+
+    private JsonNode get(String path, String query) throws Exception {
+        String uri = emulator.getUrl() + "/" + path + ".json" + (query != null ? "?" + query : "");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private JsonNode send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(emulator.getUrl() + "/" + path + ".json"))
+                .method(method, body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.iot.attendance.emulator.AdminDeviceSimulator;
+import com.iot.attendance.emulator.FirebaseRestEmulator;
+import com.iot.attendance.infrastructure.persistence.repository.FirebaseOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DeviceCommandBusTest {
+
+    private FirebaseRestEmulator emulator;
+    private AdminDeviceSimulator device;
+    private FirebaseAdminStateWatcher stateWatcher;
+    private DeviceCommandBus bus;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        emulator = FirebaseRestEmulator.start();
+        device = new AdminDeviceSimulator(emulator);
+
+        FirebaseRestClient restClient = restClient(emulator);
+        stateWatcher = new FirebaseAdminStateWatcher(restClient);
+        ReflectionTestUtils.setField(stateWatcher, "reconnectInitialDelayMs", 200L);
+        ReflectionTestUtils.setField(stateWatcher, "reconnectMaxDelayMs", 1_000L);
+        stateWatcher.start();
+        awaitMirror(stateWatcher);
+
+        FirebaseRealtimeService firebaseService = new FirebaseRealtimeService(restClient,
+                new FirebaseOutbox(mock(FirebaseOutboxRepository.class)), stateWatcher);
+        bus = bus(firebaseService, stateWatcher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+        stateWatcher.stop();
+        device.close();
+        emulator.close();
+    }
+
+    @Test
+    void bulkDeletionRunsOneCommandAtATimeInOrder() throws Exception {
+        List<DeviceCommandBus.CommandResult> results = bus.deleteFingerprints(List.of(3, 1, 2)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(3, 1, 2), results.stream().map(DeviceCommandBus.CommandResult::getTargetId).toList());
+        results.forEach(result -> assertEquals(DeviceCommandBus.CommandStatus.ACKNOWLEDGED, result.getStatus()));
+        // Cada borrado se escribió cuando el anterior ya estaba confirmado: el dispositivo los vio todos, en orden
+        assertEquals(List.of(3, 1, 2), device.getReceived());
+        assertTrue(emulator.get("admin/id_target").isNull());
+        assertEquals(0, bus.getPendingCount());
+    }
+
+    @Test
+    void deviceErrorFailsOnlyThatCommand() throws Exception {
+        device.respond(13, "BORRADO_FALLO");
+
+        List<DeviceCommandBus.CommandResult> results = bus.deleteFingerprints(List.of(13, 4)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(DeviceCommandBus.CommandStatus.FAILED, results.get(0).getStatus());
+        assertEquals("BORRADO_FALLO", results.get(0).getDeviceState());
+        assertEquals(DeviceCommandBus.CommandStatus.ACKNOWLEDGED, results.get(1).getStatus());
+        assertTrue(emulator.get("admin/id_target").isNull());
+    }
+
+    @Test
+    void silentDeviceTimesOutAndReleasesTheChannel() throws Exception {
+        device.respond(99, null);
+
+        List<DeviceCommandBus.CommandResult> results = bus.deleteFingerprints(List.of(99, 5)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(DeviceCommandBus.CommandStatus.TIMED_OUT, results.get(0).getStatus());
+        assertNull(results.get(0).getDeviceState());
+        assertEquals(DeviceCommandBus.CommandStatus.ACKNOWLEDGED, results.get(1).getStatus());
+        assertEquals(List.of(99, 5), device.getReceived());
+    }
+
+    @Test
+    void answerSeenAtTimeoutWithTheSameTargetIsAcknowledged() throws Exception {
+        DeviceCommandBus.CommandResult result = deleteAtTimeout(snapshot("BORRADO EXITOSO", 5));
+
+        assertEquals(DeviceCommandBus.CommandStatus.ACKNOWLEDGED, result.getStatus());
+        assertEquals("BORRADO EXITOSO", result.getDeviceState());
+    }
+
+    @Test
+    void answerSeenAtTimeoutForAnotherTargetIsNotThisCommands() throws Exception {
+        assertEquals(DeviceCommandBus.CommandStatus.TIMED_OUT, deleteAtTimeout(snapshot("BORRADO EXITOSO", 6)).getStatus());
+        assertEquals(DeviceCommandBus.CommandStatus.TIMED_OUT, deleteAtTimeout(snapshot("LISTO", 5)).getStatus());
+        assertEquals(DeviceCommandBus.CommandStatus.TIMED_OUT, deleteAtTimeout(FirebaseAdminStateWatcher.AdminSnapshot.builder()
+                .estado("BORRADO EXITOSO").idTarget(5).stale(true).build()).getStatus());
+    }
+
+    @Test
+    void errorSeenAtTimeoutFailsTheCommand() throws Exception {
+        DeviceCommandBus.CommandResult result = deleteAtTimeout(snapshot("BORRADO_FALLO", 5));
+
+        assertEquals(DeviceCommandBus.CommandStatus.FAILED, result.getStatus());
+        assertEquals("BORRADO_FALLO", result.getDeviceState());
+    }
+
+    // Borrado de la huella 5 cuya espera vence con el espejo de /admin en el estado dado
+    private DeviceCommandBus.CommandResult deleteAtTimeout(FirebaseAdminStateWatcher.AdminSnapshot snapshot) throws Exception {
+        FirebaseAdminStateWatcher watcher = mock(FirebaseAdminStateWatcher.class);
+        when(watcher.awaitState(any(), any())).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+        when(watcher.getSnapshot()).thenReturn(snapshot);
+        FirebaseRealtimeService firebaseService = mock(FirebaseRealtimeService.class);
+
+        DeviceCommandBus mockedBus = bus(firebaseService, watcher);
+        try {
+            DeviceCommandBus.CommandResult result = mockedBus.deleteFingerprint(5).get(5, TimeUnit.SECONDS);
+            // La limpieza de id_target corre después de mirar el espejo
+            verify(firebaseService).clearTargetFingerprintId();
+            return result;
+        } finally {
+            mockedBus.shutdown();
+        }
+    }
+
+    private FirebaseAdminStateWatcher.AdminSnapshot snapshot(String estado, Integer idTarget) {
+        return FirebaseAdminStateWatcher.AdminSnapshot.builder().estado(estado).idTarget(idTarget).build();
+    }
+
+    private DeviceCommandBus bus(FirebaseRealtimeService firebaseService, FirebaseAdminStateWatcher watcher) {
+        DeviceCommandBus commandBus = new DeviceCommandBus(firebaseService, watcher);
+        ReflectionTestUtils.setField(commandBus, "deleteTimeoutSeconds", 1);
+        ReflectionTestUtils.setField(commandBus, "historySize", 100);
+        return commandBus;
+    }
+
+    static FirebaseRestClient restClient(FirebaseRestEmulator emulator) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FirebaseResilience resilience = new FirebaseResilience(meterRegistry);
+        Map.<String, Object>of(
+                "windowSize", 20,
+                "minimumCalls", 10,
+                "failureRateThreshold", 50,
+                "slowCallMs", 5_000L,
+                "openDurationMs", 1_000L,
+                "halfOpenCalls", 3,
+                "maxConcurrentCalls", 10,
+                // Sin reintentos del transporte: los tests ven cada fallo tal cual
+                "maxAttempts", 1,
+                "initialBackoffMs", 50L,
+                "maxBackoffMs", 200L
+        ).forEach((field, value) -> ReflectionTestUtils.setField(resilience, field, value));
+        resilience.init();
+
+        FirebaseRestClient restClient = new FirebaseRestClient(meterRegistry, resilience);
+        ReflectionTestUtils.setField(restClient, "databaseUrl", emulator.getUrl());
+        ReflectionTestUtils.setField(restClient, "connectionTimeoutMs", 1_000L);
+        ReflectionTestUtils.setField(restClient, "readTimeoutMs", 2_000L);
+        restClient.init();
+        return restClient;
+    }
+
+    static void awaitMirror(FirebaseAdminStateWatcher stateWatcher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!stateWatcher.isInitialized() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(stateWatcher.isInitialized(), "el espejo de /admin no recibió su primer snapshot");
+    }
+}
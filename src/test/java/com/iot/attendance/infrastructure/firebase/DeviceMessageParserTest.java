@@ -0,0 +1,92 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceMessageParserTest {
+
+    private final DeviceMessageParser parser = new DeviceMessageParser();
+
+    @Test
+    void rfidScanUidIsStoredWithoutSpaces() {
+        assertEquals(new DeviceEvent.RfidScan("04A32B1C"), parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: 04 A3 2B 1C"));
+    }
+
+    @Test
+    void rfidScanAcceptsACompactUid() {
+        assertEquals(new DeviceEvent.RfidScan("04A32B1C"), parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: 04A32B1C"));
+    }
+
+    @Test
+    void rfidScanUidEndsAtTheFirstNonHexCharacter() {
+        // Texto detrás del UID (y los espacios que lo separan) no forma parte de la tarjeta
+        assertEquals(new DeviceEvent.RfidScan("04A3"), parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: 04 A3 (lector 2)"));
+        assertEquals(new DeviceEvent.RfidScan("04A3"), parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: 04 A3   "));
+    }
+
+    @Test
+    void rfidScanIsFoundInsideALongerMessage() {
+        assertEquals(new DeviceEvent.RfidScan("DEADBEEF"), parser.parse(FirebaseLogNode.ASISTENCIA, "[ESP32-01] Marcaje RFID: DE AD BE EF"));
+    }
+
+    @Test
+    void rfidScanSkipsAPrefixWithoutUid() {
+        assertEquals(new DeviceEvent.RfidScan("0A"), parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: ?? Marcaje RFID: 0A"));
+    }
+
+    @Test
+    void rfidScanOnlyAcceptsUppercaseHex() {
+        // Igual que el patrón histórico [0-9A-F ]+: el firmware publica el UID en mayúsculas
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: de ad be ef"));
+        assertEquals(new DeviceEvent.RfidScan("04"), parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID: 04 a3"));
+    }
+
+    @Test
+    void malformedRfidScansAreNotRecognized() {
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID:"));
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID:    "));
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "Marcaje RFID:04A3"));
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "marcaje rfid: 04 A3"));
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, ""));
+    }
+
+    @Test
+    void doorOpenedCarriesTheFingerprintId() {
+        assertEquals(new DeviceEvent.DoorOpened(12), parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: 12"));
+        assertEquals(new DeviceEvent.DoorOpened(0), parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: 0"));
+        assertEquals(new DeviceEvent.DoorOpened(7), parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: 007 (huella)"));
+        assertEquals(new DeviceEvent.DoorOpened(Integer.MAX_VALUE), parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: 2147483647"));
+    }
+
+    @Test
+    void malformedDoorEventsAreNotRecognized() {
+        assertNull(parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: "));
+        assertNull(parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: -1"));
+        assertNull(parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: X1"));
+        assertNull(parser.parse(FirebaseLogNode.ACCESOS, "Puerta cerrada ID: 12"));
+        // Un ID fuera de rango de int no corresponde a ningún slot del sensor
+        assertNull(parser.parse(FirebaseLogNode.ACCESOS, "Puerta abierta ID: 2147483648"));
+    }
+
+    @Test
+    void securityEventsAreAccessDenials() {
+        assertSame(DeviceEvent.AccessDenied.INSTANCE, parser.parse(FirebaseLogNode.SEGURIDAD, "Intento fallido huella"));
+        assertSame(DeviceEvent.AccessDenied.INSTANCE, parser.parse(FirebaseLogNode.SEGURIDAD, "ALERTA: Huella desconocida en puerta 1"));
+        assertNull(parser.parse(FirebaseLogNode.SEGURIDAD, "Sistema iniciado"));
+    }
+
+    @Test
+    void messagesAreParsedOnlyForTheirOwnNode() {
+        assertNull(parser.parse(FirebaseLogNode.ACCESOS, "Marcaje RFID: 04 A3 2B 1C"));
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "Puerta abierta ID: 12"));
+        assertNull(parser.parse(FirebaseLogNode.ASISTENCIA, "Huella desconocida"));
+    }
+
+    @Test
+    void nullMessageIsIgnored() {
+        for (FirebaseLogNode node : FirebaseLogNode.values()) {
+            assertNull(parser.parse(node, null));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FirebaseLogEventHandlerTest {
+
+    private final LogPartition partition = new LogPartition(LogPartition.DEFAULT_SITE, FirebaseLogNode.ASISTENCIA, "logs/asistencia");
+
+    private IngestionBatchPipeline pipeline;
+    private IngestionJournal journal;
+    private FirebaseLogEventHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = mock(IngestionBatchPipeline.class);
+        journal = mock(IngestionJournal.class);
+        handler = new FirebaseLogEventHandler(pipeline, mock(ProcessedKeyDeduplicator.class), new DeviceMessageParser(),
+                journal, mock(IngestionCursorService.class), mock(IngestionPartitions.class));
+    }
+
+    @Test
+    void backlogKeepsTheTimeEncodedInThePushKey() throws Exception {
+        LocalDateTime scannedAt = LocalDateTime.now().minusHours(2).truncatedTo(ChronoUnit.MILLIS);
+        String key = PushKeys.prefix(scannedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()) + "AbCdEfGhIjKl";
+
+        handler.handle(partition, key, "Marcaje RFID: 04 A3 2B 1C");
+
+        assertEquals(scannedAt, submitted().receivedAt());
+    }
+
+    @Test
+    void journaledEventsKeepThePushKeyTimeToo() {
+        when(journal.isEnabled()).thenReturn(true);
+        LocalDateTime scannedAt = LocalDateTime.now().minusMinutes(30).truncatedTo(ChronoUnit.MILLIS);
+        String key = PushKeys.prefix(scannedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()) + "AbCdEfGhIjKl";
+
+        handler.handle(partition, key, "Marcaje RFID: 04 A3 2B 1C");
+
+        ArgumentCaptor<IngestionEvent> captor = ArgumentCaptor.forClass(IngestionEvent.class);
+        verify(journal).append(captor.capture());
+        assertEquals(scannedAt, captor.getValue().receivedAt());
+    }
+
+    @Test
+    void keyThatIsNotAPushKeyFallsBackToNow() throws Exception {
+        LocalDateTime before = LocalDateTime.now();
+
+        handler.handle(partition, "manual-entry", "Marcaje RFID: 04 A3 2B 1C");
+
+        LocalDateTime receivedAt = submitted().receivedAt();
+        assertFalse(receivedAt.isBefore(before));
+        assertFalse(receivedAt.isAfter(LocalDateTime.now()));
+    }
+
+    private IngestionEvent submitted() throws Exception {
+        ArgumentCaptor<IngestionEvent> captor = ArgumentCaptor.forClass(IngestionEvent.class);
+        verify(pipeline).submit(captor.capture());
+        verify(journal, never()).append(any());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,242 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.iot.attendance.emulator.AdminDeviceSimulator;
+import com.iot.attendance.emulator.FirebaseRestEmulator;
+import com.iot.attendance.infrastructure.persistence.entity.FirebaseOutboxEntity;
+import com.iot.attendance.infrastructure.persistence.repository.FirebaseOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FirebaseOutboxRelayTest {
+
+    // firebase_outbox en memoria: el relay solo ve copias, como filas leídas de la BD
+    private final Map<Long, FirebaseOutboxEntity> rows = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Push keys guardadas en cada save, en orden
+    private final List<String> savedKeys = new CopyOnWriteArrayList<>();
+
+    private FirebaseRestEmulator emulator;
+    private AdminDeviceSimulator device;
+    private FirebaseAdminStateWatcher stateWatcher;
+    private DeviceCommandBus bus;
+    private FirebaseOutbox outbox;
+    private FirebaseOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        emulator = FirebaseRestEmulator.start();
+        device = new AdminDeviceSimulator(emulator);
+
+        FirebaseRestClient restClient = DeviceCommandBusTest.restClient(emulator);
+        stateWatcher = new FirebaseAdminStateWatcher(restClient);
+        ReflectionTestUtils.setField(stateWatcher, "reconnectInitialDelayMs", 200L);
+        ReflectionTestUtils.setField(stateWatcher, "reconnectMaxDelayMs", 1_000L);
+        stateWatcher.start();
+        DeviceCommandBusTest.awaitMirror(stateWatcher);
+
+        FirebaseOutboxRepository repository = repository();
+        outbox = new FirebaseOutbox(repository);
+        bus = new DeviceCommandBus(new FirebaseRealtimeService(restClient, outbox, stateWatcher), stateWatcher);
+        ReflectionTestUtils.setField(bus, "deleteTimeoutSeconds", 1);
+        ReflectionTestUtils.setField(bus, "historySize", 100);
+
+        IngestionLeaderElection leaderElection = mock(IngestionLeaderElection.class);
+        when(leaderElection.isCoordinator()).thenReturn(true);
+        relay = new FirebaseOutboxRelay(repository, restClient, bus, stateWatcher, leaderElection, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "batchSize", 500);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 5);
+        ReflectionTestUtils.setField(relay, "retryBackoffMs", 1_000L);
+        ReflectionTestUtils.setField(relay, "maxBackoffMs", 2_000L);
+        relay.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+        stateWatcher.stop();
+        device.close();
+        emulator.close();
+    }
+
+    @Test
+    void bulkDeletionIsAcknowledgedInOrder() {
+        for (int fingerprintId : new int[]{5, 6, 7}) {
+            outbox.appendFingerprintDeletion(fingerprintId);
+        }
+
+        relayUntil(rows::isEmpty);
+
+        assertEquals(List.of(5, 6, 7), device.getReceived());
+    }
+
+    @Test
+    void deviceErrorLeavesTheRowFailedWithoutRetrying() {
+        device.respond(13, "BORRADO_FALLO");
+        Long id = outbox.appendFingerprintDeletion(13);
+
+        relayUntil(() -> status(id).equals(FirebaseOutboxEntity.STATUS_FAILED));
+
+        assertTrue(rows.get(id).getLastError().contains("BORRADO_FALLO"));
+        assertEquals(List.of(13), device.getReceived());
+    }
+
+    @Test
+    void silentDeletionIsRetriedOnceThenLeftUncertain() {
+        device.respond(99, null);
+        Long id = outbox.appendFingerprintDeletion(99);
+
+        relayUntil(() -> status(id).equals(FirebaseOutboxEntity.STATUS_UNCERTAIN));
+
+        assertEquals(List.of(99, 99), device.getReceived());
+        assertTrue(rows.get(id).getTimedOut());
+        assertEquals(1, relay.getUncertainCount());
+    }
+
+    @Test
+    void answerArrivingAfterTheTimeoutDoesNotConfirmIt() {
+        // La primera respuesta llega 300 ms tarde, con id_target ya limpio; el reintento confirma de verdad
+        device.delay(77, 1_300L);
+        Long id = outbox.appendFingerprintDeletion(77);
+
+        relayUntil(() -> rows.get(id) != null && Boolean.TRUE.equals(rows.get(id).getTimedOut()));
+        assertEquals(FirebaseOutboxEntity.STATUS_PENDING, status(id));
+
+        relayUntil(() -> !rows.containsKey(id));
+        assertEquals(List.of(77, 77), device.getReceived());
+        assertEquals(0, relay.getUncertainCount());
+    }
+
+    @Test
+    void rejectedPatchIsResentUnderNewPushKeys() {
+        emulator.rejectNext("PATCH", 400);
+        Long id = outbox.appendLog("logs/accesos", "Puerta abierta ID: 4");
+
+        relay.relay();
+        assertEquals(1, rows.get(id).getAttemptCount());
+        assertNull(rows.get(id).getPushKey());
+
+        relayUntil(rows::isEmpty);
+
+        List<String> written = keys("logs/accesos");
+        assertEquals(1, written.size());
+        assertEquals(2, savedKeys.stream().distinct().count());
+        assertEquals(savedKeys.get(savedKeys.size() - 1), written.get(0));
+    }
+
+    @Test
+    void uncertainPatchIsResentUnderTheSameKeys() {
+        emulator.dropNextResponse("PATCH");
+        Long id = outbox.appendLog("logs/accesos", "Puerta abierta ID: 4");
+
+        relay.relay();
+        String key = rows.get(id).getPushKey();
+        assertNotNull(key);
+        // Firebase sí aplicó el PATCH cuya respuesta se perdió
+        assertEquals(List.of(key), keys("logs/accesos"));
+
+        relayUntil(rows::isEmpty);
+
+        assertEquals(List.of(key), keys("logs/accesos"));
+        assertEquals(2, emulator.getRequestCount("PATCH"));
+    }
+
+    private void relayUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "el outbox no llegó al estado esperado: " + rows.values());
+            relay.relay();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    private String status(Long id) {
+        FirebaseOutboxEntity row = rows.get(id);
+        return row != null ? row.getStatus() : "";
+    }
+
+    private List<String> keys(String path) {
+        List<String> keys = new ArrayList<>();
+        JsonNode node = emulator.get(path);
+        node.fieldNames().forEachRemaining(keys::add);
+        return keys;
+    }
+
+    private FirebaseOutboxRepository repository() {
+        FirebaseOutboxRepository repository = mock(FirebaseOutboxRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            FirebaseOutboxEntity entry = invocation.getArgument(0);
+            if (entry.getId() == null) {
+                entry.setId(sequence.incrementAndGet());
+                entry.setCreatedAt(LocalDateTime.now());
+            }
+            store(entry);
+            return entry;
+        });
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<FirebaseOutboxEntity> entries = invocation.getArgument(0);
+            entries.forEach(this::store);
+            return entries;
+        });
+        when(repository.findPending(any())).thenAnswer(invocation -> rows.values().stream()
+                .filter(entry -> entry.getStatus().equals(FirebaseOutboxEntity.STATUS_PENDING))
+                .limit(((Pageable) invocation.getArgument(0)).getPageSize())
+                .map(this::copy)
+                .toList());
+        doAnswer(invocation -> {
+            Iterable<FirebaseOutboxEntity> entries = invocation.getArgument(0);
+            entries.forEach(entry -> rows.remove(entry.getId()));
+            return null;
+        }).when(repository).deleteAllInBatch(any());
+        doAnswer(invocation -> rows.remove(((FirebaseOutboxEntity) invocation.getArgument(0)).getId()))
+                .when(repository).delete(any());
+        when(repository.countByStatus(anyString())).thenAnswer(invocation -> rows.values().stream()
+                .filter(entry -> entry.getStatus().equals(invocation.getArgument(0)))
+                .count());
+        return repository;
+    }
+
+    private void store(FirebaseOutboxEntity entry) {
+        if (entry.getPushKey() != null) savedKeys.add(entry.getPushKey());
+        rows.put(entry.getId(), copy(entry));
+    }
+
+    private FirebaseOutboxEntity copy(FirebaseOutboxEntity entry) {
+        return FirebaseOutboxEntity.builder()
+                .id(entry.getId())
+                .targetPath(entry.getTargetPath())
+                .operation(entry.getOperation())
+                .payload(entry.getPayload())
+                .pushKey(entry.getPushKey())
+                .status(entry.getStatus())
+                .attemptCount(entry.getAttemptCount())
+                .lastError(entry.getLastError())
+                .timedOut(entry.getTimedOut())
+                .nextAttemptAt(entry.getNextAttemptAt())
+                .createdAt(entry.getCreatedAt())
+                .build();
+    }
+}
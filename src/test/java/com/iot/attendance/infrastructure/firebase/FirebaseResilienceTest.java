@@ -0,0 +1,176 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FirebaseResilienceTest {
+
+    private static final String ENDPOINT = "logs/asistencia";
+
+    private FirebaseResilience resilience;
+
+    @BeforeEach
+    void setUp() {
+        resilience = new FirebaseResilience(new SimpleMeterRegistry());
+        Map.<String, Object>of(
+                "windowSize", 10,
+                "minimumCalls", 4,
+                "failureRateThreshold", 50,
+                "slowCallMs", 60_000L,
+                "openDurationMs", 60_000L,
+                "halfOpenCalls", 2,
+                "maxConcurrentCalls", 2,
+                "maxAttempts", 3,
+                "initialBackoffMs", 100L,
+                "maxBackoffMs", 1_000L
+        ).forEach((field, value) -> ReflectionTestUtils.setField(resilience, field, value));
+        resilience.init();
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() throws Exception {
+        calls(3, true);
+
+        assertEquals(FirebaseResilience.State.CLOSED, resilience.getState());
+        assertEquals(100.0, resilience.getFailureRate());
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() throws Exception {
+        calls(2, false);
+        calls(2, true);
+
+        assertEquals(FirebaseResilience.State.OPEN, resilience.getState());
+        assertThrows(FirebaseResilience.CallNotPermittedException.class, () -> resilience.acquire(ENDPOINT));
+    }
+
+    @Test
+    void slowCallsCountAsFailures() throws Exception {
+        ReflectionTestUtils.setField(resilience, "slowCallMs", -1L);
+
+        calls(4, false);
+
+        assertEquals(FirebaseResilience.State.OPEN, resilience.getState());
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulProbes() throws Exception {
+        open();
+        ReflectionTestUtils.setField(resilience, "openDurationMs", 0L);
+        assertEquals(FirebaseResilience.State.HALF_OPEN, resilience.getState());
+
+        FirebaseResilience.Permit first = resilience.acquire(ENDPOINT);
+        FirebaseResilience.Permit second = resilience.acquire(ENDPOINT);
+        // Solo half-open-calls llamadas de prueba a la vez
+        assertThrows(FirebaseResilience.CallNotPermittedException.class, () -> resilience.acquire("admin/estado"));
+
+        resilience.release(first, false);
+        assertEquals(FirebaseResilience.State.HALF_OPEN, resilience.getState());
+        resilience.release(second, false);
+        assertEquals(FirebaseResilience.State.CLOSED, resilience.getState());
+        assertEquals(0, resilience.getWindowCount());
+    }
+
+    @Test
+    void failedProbeReopens() throws Exception {
+        open();
+        ReflectionTestUtils.setField(resilience, "openDurationMs", 0L);
+        FirebaseResilience.Permit probe = resilience.acquire(ENDPOINT);
+        ReflectionTestUtils.setField(resilience, "openDurationMs", 60_000L);
+
+        resilience.release(probe, true);
+
+        assertEquals(FirebaseResilience.State.OPEN, resilience.getState());
+    }
+
+    @Test
+    void resultsFromBeforeAStateChangeAreIgnored() throws Exception {
+        FirebaseResilience.Permit stale = resilience.acquire(ENDPOINT);
+        open();
+        ReflectionTestUtils.setField(resilience, "openDurationMs", 0L);
+        assertEquals(FirebaseResilience.State.HALF_OPEN, resilience.getState());
+
+        resilience.release(stale, true);
+
+        assertEquals(FirebaseResilience.State.HALF_OPEN, resilience.getState());
+    }
+
+    @Test
+    void bulkheadLimitsConcurrentCallsPerRootNode() throws Exception {
+        FirebaseResilience.Permit first = resilience.acquire("logs/asistencia");
+        FirebaseResilience.Permit second = resilience.acquire("logs/accesos/compaction");
+
+        FirebaseResilience.CallNotPermittedException rejected = assertThrows(FirebaseResilience.CallNotPermittedException.class,
+                () -> resilience.acquire("/logs/seguridad"));
+        assertTrue(rejected.getMessage().contains("'logs'"));
+        // Otro nodo raíz tiene su propio cupo
+        FirebaseResilience.Permit admin = resilience.acquire("admin/estado");
+        assertEquals(0, resilience.getAvailableCalls().get("logs"));
+        assertEquals(1, resilience.getAvailableCalls().get("admin"));
+
+        resilience.release(first, false);
+        resilience.release(admin, false);
+        assertEquals(1, resilience.getAvailableCalls().get("logs"));
+        resilience.release(resilience.acquire("logs/seguridad"), false);
+        resilience.release(second, false);
+        assertEquals(2, resilience.getAvailableCalls().get("logs"));
+    }
+
+    @Test
+    void bulkheadRejectionDoesNotUseAHalfOpenProbe() throws Exception {
+        FirebaseResilience.Permit first = resilience.acquire(ENDPOINT);
+        FirebaseResilience.Permit second = resilience.acquire(ENDPOINT);
+        // Los fallos llegan por otro nodo: el cupo de logs sigue ocupado
+        calls("admin/estado", 4, true);
+        ReflectionTestUtils.setField(resilience, "openDurationMs", 0L);
+
+        assertThrows(FirebaseResilience.CallNotPermittedException.class, () -> resilience.acquire(ENDPOINT));
+        resilience.release(first, false);
+        resilience.release(second, false);
+
+        resilience.release(resilience.acquire(ENDPOINT), false);
+        resilience.release(resilience.acquire(ENDPOINT), false);
+        assertEquals(FirebaseResilience.State.CLOSED, resilience.getState());
+    }
+
+    @Test
+    void retriesOnlyTransientFailures() {
+        assertTrue(resilience.isRetryable(new IOException("connection reset")));
+        assertTrue(resilience.isRetryable(new FirebaseRestClient.HttpStatusException(503, ENDPOINT)));
+        assertTrue(resilience.isRetryable(new FirebaseRestClient.HttpStatusException(429, ENDPOINT)));
+        assertFalse(resilience.isRetryable(new FirebaseRestClient.HttpStatusException(404, ENDPOINT)));
+        assertFalse(resilience.isRetryable(new FirebaseResilience.CallNotPermittedException("abierto")));
+        assertFalse(resilience.isRetryable(new IllegalStateException()));
+    }
+
+    @Test
+    void retryDelayIsCappedWithJitter() {
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long cap = Math.min(1_000L, 100L << (attempt - 1));
+            long delay = resilience.retryDelayMs(attempt);
+            assertTrue(delay >= cap / 2 && delay <= cap, "intento " + attempt + ": " + delay);
+        }
+    }
+
+    private void open() throws Exception {
+        calls(4, true);
+        assertEquals(FirebaseResilience.State.OPEN, resilience.getState());
+    }
+
+    private void calls(int count, boolean failure) throws Exception {
+        calls(ENDPOINT, count, failure);
+    }
+
+    private void calls(String endpoint, int count, boolean failure) throws Exception {
+        for (int i = 0; i < count; i++) {
+            resilience.release(resilience.acquire(endpoint), failure);
+        }
+    }
+}
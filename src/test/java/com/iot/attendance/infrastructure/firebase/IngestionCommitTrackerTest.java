@@ -0,0 +1,89 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionCommitTrackerTest {
+
+    private final IngestionCommitTracker tracker = new IngestionCommitTracker();
+    private final LogPartition asistencia = new LogPartition(LogPartition.DEFAULT_SITE, FirebaseLogNode.ASISTENCIA, "logs/asistencia");
+    private final LogPartition accesos = new LogPartition(LogPartition.DEFAULT_SITE, FirebaseLogNode.ACCESOS, "logs/accesos");
+
+    @Test
+    void advancesToHighestCompletedKeyWhenNothingIsInFlight() {
+        begin(asistencia, "k1", "k2", "k3");
+
+        assertEquals("k3", tracker.complete(asistencia, List.of("k1", "k2", "k3")));
+        assertEquals(0, tracker.getInFlightCount());
+    }
+
+    @Test
+    void doesNotPassALowerKeyStillInFlight() {
+        begin(asistencia, "k1", "k2", "k3", "k4");
+
+        // Otro carril confirmó k3 y k4 antes que k1
+        assertNull(tracker.complete(asistencia, List.of("k3", "k4")));
+        assertEquals("k1", tracker.complete(asistencia, List.of("k1")));
+        assertEquals("k4", tracker.complete(asistencia, List.of("k2")));
+    }
+
+    @Test
+    void safeKeyStopsRightBelowTheFirstPendingKey() {
+        begin(asistencia, "k1", "k2", "k3", "k4", "k5");
+
+        assertEquals("k2", tracker.complete(asistencia, List.of("k1", "k2", "k4")));
+        assertEquals(2, tracker.getInFlightCount());
+        assertEquals("k4", tracker.complete(asistencia, List.of("k3")));
+        assertEquals("k5", tracker.complete(asistencia, List.of("k5")));
+    }
+
+    @Test
+    void completedKeysAreReturnedOnlyOnce() {
+        begin(asistencia, "k1", "k2");
+
+        assertEquals("k1", tracker.complete(asistencia, List.of("k1")));
+        assertNull(tracker.complete(asistencia, List.of()));
+        assertEquals("k2", tracker.complete(asistencia, List.of("k2")));
+    }
+
+    @Test
+    void partitionsAreTrackedIndependently() {
+        begin(asistencia, "a1", "a2");
+        begin(accesos, "b1");
+
+        assertNull(tracker.complete(asistencia, List.of("a2")));
+        assertEquals("b1", tracker.complete(accesos, List.of("b1")));
+        assertEquals("a2", tracker.complete(asistencia, List.of("a1")));
+    }
+
+    @Test
+    void cancelledKeyNoLongerHoldsTheCursor() {
+        begin(asistencia, "k1", "k2");
+
+        assertNull(tracker.complete(asistencia, List.of("k2")));
+        tracker.cancel(asistencia, "k1");
+        assertEquals(0, tracker.getInFlightCount());
+
+        // Reintento del evento cancelado
+        begin(asistencia, "k1");
+        assertEquals("k2", tracker.complete(asistencia, List.of("k1")));
+    }
+
+    @Test
+    void comparesPushKeysInByteOrder() {
+        // Las push keys de Firebase ordenan por código: '-' < dígitos < mayúsculas < '_' < minúsculas
+        begin(asistencia, "-Nabc", "-NabC", "-Nab_");
+
+        assertNull(tracker.complete(asistencia, List.of("-Nabc", "-Nab_")));
+        assertEquals("-Nabc", tracker.complete(asistencia, List.of("-NabC")));
+    }
+
+    private void begin(LogPartition partition, String... keys) {
+        for (String key : keys) {
+            tracker.begin(partition, key);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.iot.attendance.infrastructure.firebase;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private IngestionPartitions partitions;
+    private LogPartition partition;
+    private final List<IngestionJournal> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        partitions = new IngestionPartitions();
+        ReflectionTestUtils.setField(partitions, "sites", List.of(LogPartition.DEFAULT_SITE));
+        ReflectionTestUtils.setField(partitions, "sitesRoot", "sites");
+        partitions.init();
+        partition = partitions.find(LogPartition.DEFAULT_SITE, FirebaseLogNode.ASISTENCIA).orElseThrow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(IngestionJournal::close);
+    }
+
+    @Test
+    void pollOnlyReturnsSyncedRecordsInOrder() throws Exception {
+        IngestionJournal journal = open(1 << 16);
+        journal.recover(Map.of(), event -> { });
+        append(journal, "k1", "k2", "k3");
+
+        assertTrue(journal.poll(10, 20).isEmpty());
+
+        journal.sync();
+        assertEquals(List.of("k1", "k2", "k3"), keys(journal.poll(10, 20)));
+        assertEquals(0, journal.getUnreadCount());
+        assertEquals(3, journal.getPendingCount());
+    }
+
+    @Test
+    void pollWaitsForRecovery() throws Exception {
+        IngestionJournal journal = open(1 << 16);
+        append(journal, "k1");
+        journal.sync();
+
+        assertTrue(journal.poll(10, 20).isEmpty());
+
+        journal.recover(Map.of(), event -> { });
+        assertEquals(List.of("k1"), keys(journal.poll(10, 20)));
+    }
+
+    @Test
+    void drainedSegmentsAreDeletedAfterCommit() throws Exception {
+        IngestionJournal journal = open(256);
+        journal.recover(Map.of(), event -> { });
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            written.add(String.format("k%02d", i));
+        }
+        append(journal, written.toArray(String[]::new));
+        journal.sync();
+        assertTrue(segmentFiles().size() > 2);
+
+        List<IngestionEvent> read = new ArrayList<>();
+        while (read.size() < written.size()) {
+            List<IngestionEvent> batch = journal.poll(7, 20);
+            assertFalse(batch.isEmpty());
+            read.addAll(batch);
+        }
+        assertEquals(written, keys(read));
+
+        journal.markCommitted(read);
+        assertEquals(0, journal.getPendingCount());
+        // Solo queda el segmento activo
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    void recoverySkipsCommittedKeys() throws Exception {
+        IngestionJournal first = open(1 << 16);
+        first.recover(Map.of(), event -> { });
+        append(first, "k1", "k2", "k3");
+        first.sync();
+        first.close();
+
+        IngestionJournal second = open(1 << 16);
+        List<String> replayed = new ArrayList<>();
+        assertEquals(2, second.recover(Map.of(partition, "k1"), event -> replayed.add(event.key())));
+
+        assertEquals(List.of("k2", "k3"), replayed);
+        assertEquals(List.of("k2", "k3"), keys(second.poll(10, 20)));
+        assertEquals("k3", second.getJournaledKey(partition).orElseThrow());
+    }
+
+    @Test
+    void recoveryStopsAtRecordWithBadCrc() throws Exception {
+        IngestionJournal first = open(1 << 16);
+        first.recover(Map.of(), event -> { });
+        append(first, "k1", "k2", "k3");
+        first.sync();
+        first.close();
+
+        Path segment = segmentFiles().get(0);
+        int third = recordOffset(segment, 2);
+        // Un byte del cuerpo del tercer registro cambia: su CRC ya no coincide
+        write(segment, third + 8, (byte) 0x7f);
+
+        IngestionJournal second = open(1 << 16);
+        assertEquals(2, second.recover(Map.of(), event -> { }));
+        assertEquals(List.of("k1", "k2"), keys(second.poll(10, 20)));
+    }
+
+    @Test
+    void recoveryStopsAtTornRecord() throws Exception {
+        IngestionJournal first = open(1 << 16);
+        first.recover(Map.of(), event -> { });
+        append(first, "k1", "k2");
+        first.sync();
+        first.close();
+
+        Path segment = segmentFiles().get(0);
+        int end = recordOffset(segment, 2);
+        // Cabecera de un registro cuyo cuerpo no llegó a escribirse entero
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(1 << 20).putInt(0).flip();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(header, end);
+        }
+
+        IngestionJournal second = open(1 << 16);
+        assertEquals(2, second.recover(Map.of(), event -> { }));
+        assertEquals(List.of("k1", "k2"), keys(second.poll(10, 20)));
+
+        second.markCommitted(List.of(event("k1"), event("k2")));
+        assertFalse(Files.exists(segment));
+    }
+
+    private IngestionJournal open(int segmentSizeBytes) throws Exception {
+        IngestionJournal journal = new IngestionJournal(partitions);
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", directory);
+        ReflectionTestUtils.setField(journal, "segmentSizeBytes", segmentSizeBytes);
+        journal.init();
+        opened.add(journal);
+        return journal;
+    }
+
+    private void append(IngestionJournal journal, String... keys) {
+        for (String key : keys) {
+            journal.append(event(key));
+        }
+    }
+
+    private IngestionEvent event(String key) {
+        return new IngestionEvent(partition, key, "Marcaje RFID: 04 A3 2B 1C (" + key + ")", null, LocalDateTime.now());
+    }
+
+    private List<String> keys(List<IngestionEvent> events) {
+        return events.stream().map(IngestionEvent::key).toList();
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    // Offset del registro n (desde 0) siguiendo los largos de cabecera
+    private int recordOffset(Path segment, int n) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        for (int i = 0; i < n; i++) {
+            position += 8 + buffer.getInt(position);
+        }
+        return position;
+    }
+
+    private void write(Path segment, int offset, byte value) throws Exception {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{value}), offset);
+        }
+    }
+}